@@ -0,0 +1,58 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Execute a modifying query asynchronously, as JDBC batches in a background worker outside of the transaction of the
+ * caller: the errors are only logged. The annotated method must return void.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface AsyncWrite {
+
+	/**
+	 * Maximum number of pending writes.
+	 *
+	 * @return
+	 */
+	int capacity() default 10000;
+
+	/**
+	 * Maximum number of writes executed in a single batch.
+	 *
+	 * @return
+	 */
+	int batchSize() default 500;
+
+	/**
+	 * Maximum time in milliseconds that a write wait in the queue before being executed.
+	 *
+	 * @return
+	 */
+	long maxDelayMillis() default 10;
+
+	/**
+	 * What to do when the queue is full.
+	 *
+	 * @return
+	 */
+	OverflowPolicy overflow() default OverflowPolicy.BLOCK;
+}
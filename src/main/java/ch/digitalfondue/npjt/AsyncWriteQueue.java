@@ -0,0 +1,270 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import org.apache.commons.logging.LogFactory;
+import org.springframework.core.log.LogAccessor;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Queue of the pending writes of a method annotated with {@link AsyncWrite}.
+ */
+public class AsyncWriteQueue {
+
+	private static final LogAccessor LOGGER = new LogAccessor(LogFactory.getLog(AsyncWriteQueue.class));
+
+	private final String methodName;
+	private final NamedParameterJdbcTemplate jdbc;
+	private final BatchUpdate batchUpdate;
+	private final int capacity;
+	private final int batchSize;
+	private final long maxDelayNanos;
+	private final OverflowPolicy overflow;
+
+	private final AtomicLong written = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+
+	// the state below is guarded by the lock
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+	private final Condition drained = lock.newCondition();
+	private final Queue<SqlParameterSource> queue = new ArrayDeque<>();
+	// number of writes in the queue or in execution
+	private volatile int pending;
+	private int flushing;
+	private boolean running = true;
+	private Thread worker;
+
+	AsyncWriteQueue(String methodName, NamedParameterJdbcTemplate jdbc, BatchUpdate batchUpdate, AsyncWrite asyncWrite) {
+		this.methodName = methodName;
+		this.jdbc = jdbc;
+		this.batchUpdate = batchUpdate;
+		this.capacity = Math.max(1, asyncWrite.capacity());
+		this.batchSize = Math.max(1, asyncWrite.batchSize());
+		this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, asyncWrite.maxDelayMillis()));
+		this.overflow = asyncWrite.overflow();
+	}
+
+	public String getMethodName() {
+		return methodName;
+	}
+
+	/**
+	 * @return the number of writes in the queue or in execution
+	 */
+	public int getQueueDepth() {
+		return pending;
+	}
+
+	public long getWrittenCount() {
+		return written.get();
+	}
+
+	/**
+	 * @return the number of writes discarded as the queue was full
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * @return the number of writes that have failed
+	 */
+	public long getFailedCount() {
+		return failed.get();
+	}
+
+	/**
+	 * Wait until all the pending writes are executed.
+	 */
+	public void flush() {
+		lock.lock();
+		try {
+			flushing++;
+			notEmpty.signal();
+			while (pending > 0 && running) {
+				ensureWorker();
+				drained.awaitUninterruptibly();
+			}
+		} finally {
+			flushing--;
+			lock.unlock();
+		}
+	}
+
+	void offer(SqlParameterSource parameters) {
+		lock.lock();
+		try {
+			while (running && pending >= capacity) {
+				if (overflow == OverflowPolicy.DROP) {
+					dropped.incrementAndGet();
+					return;
+				} else if (overflow == OverflowPolicy.CALLER_RUNS) {
+					break;
+				}
+				notFull.awaitUninterruptibly();
+			}
+			if (running && pending < capacity) {
+				queue.add(parameters);
+				pending++;
+				ensureWorker();
+				if (queue.size() == 1 || queue.size() >= batchSize) {
+					notEmpty.signal();
+				}
+				return;
+			}
+		} finally {
+			lock.unlock();
+		}
+		// the queue is full or has been shut down
+		write(parameters);
+	}
+
+	// must be called with the lock held: start a new worker if none is running, e.g. after an error
+	private void ensureWorker() {
+		if (worker == null) {
+			Thread t = new Thread(this::work, "npjt-async-write-" + methodName);
+			t.setDaemon(true);
+			t.start();
+			worker = t;
+		}
+	}
+
+	private void work() {
+		try {
+			List<SqlParameterSource> batch = new ArrayList<>(batchSize);
+			while (takeBatch(batch)) {
+				try {
+					batchUpdate.execute(jdbc, batch.toArray(new SqlParameterSource[0]));
+					written.addAndGet(batch.size());
+				} catch (RuntimeException e) {
+					failed.addAndGet(batch.size());
+					LOGGER.error(e, () -> "Error while executing " + batch.size() + " asynchronous writes for method " + methodName);
+				} finally {
+					completed(batch.size());
+					batch.clear();
+				}
+			}
+		} finally {
+			lock.lock();
+			try {
+				// the worker is stopping: the next offer or flush will start a new one if needed
+				if (worker == Thread.currentThread()) {
+					worker = null;
+				}
+				drained.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Wait until a full batch is available, or the oldest write has waited maxDelay.
+	 *
+	 * @return false if the queue has been shut down and is empty
+	 */
+	private boolean takeBatch(List<SqlParameterSource> batch) {
+		lock.lock();
+		try {
+			while (queue.isEmpty() && running) {
+				notEmpty.awaitUninterruptibly();
+			}
+			long nanos = maxDelayNanos;
+			while (queue.size() < batchSize && running && flushing == 0 && nanos > 0) {
+				try {
+					nanos = notEmpty.awaitNanos(nanos);
+				} catch (InterruptedException e) {
+					break;
+				}
+			}
+			SqlParameterSource p;
+			while (batch.size() < batchSize && (p = queue.poll()) != null) {
+				batch.add(p);
+			}
+			return !batch.isEmpty();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void completed(int count) {
+		lock.lock();
+		try {
+			pending -= count;
+			notFull.signalAll();
+			if (pending == 0) {
+				drained.signalAll();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void write(SqlParameterSource parameters) {
+		jdbc.update(batchUpdate.getTemplate(), parameters);
+		written.incrementAndGet();
+	}
+
+	/**
+	 * Execute the pending writes and stop the worker: the next writes will be executed synchronously.
+	 */
+	void shutdown() {
+		Thread t;
+		lock.lock();
+		try {
+			running = false;
+			notEmpty.signalAll();
+			notFull.signalAll();
+			drained.signalAll();
+			t = worker;
+		} finally {
+			lock.unlock();
+		}
+		if (t != null) {
+			try {
+				t.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		// the writes left by a worker that has died
+		List<SqlParameterSource> remaining;
+		lock.lock();
+		try {
+			remaining = new ArrayList<>(queue);
+			queue.clear();
+		} finally {
+			lock.unlock();
+		}
+		for (SqlParameterSource parameters : remaining) {
+			write(parameters);
+			completed(1);
+		}
+	}
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The queues of the methods annotated with {@link AsyncWrite} of a repository.
+ *
+ * It can be accessed by defining a method without parameters returning AsyncWriteQueues in the repository.
+ */
+public class AsyncWriteQueues {
+
+	private final Map<String, AsyncWriteQueue> queues = new LinkedHashMap<>();
+
+	AsyncWriteQueues() {
+	}
+
+	void add(AsyncWriteQueue queue) {
+		queues.put(queue.getMethodName(), queue);
+	}
+
+	public Collection<AsyncWriteQueue> getQueues() {
+		return Collections.unmodifiableCollection(queues.values());
+	}
+
+	/**
+	 * @param methodName the name of the method annotated with {@link AsyncWrite}
+	 * @return the queue, or null if not present
+	 */
+	public AsyncWriteQueue getQueue(String methodName) {
+		return queues.get(methodName);
+	}
+
+	/**
+	 * Wait until all the pending writes are executed.
+	 */
+	public void flush() {
+		for (AsyncWriteQueue queue : queues.values()) {
+			queue.flush();
+		}
+	}
+
+	void shutdown() {
+		for (AsyncWriteQueue queue : queues.values()) {
+			queue.shutdown();
+		}
+	}
+}
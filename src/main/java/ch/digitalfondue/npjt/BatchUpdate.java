@@ -0,0 +1,224 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.lang.reflect.Method;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A modifying query executed as a JDBC batch, optionally rewritten as a multi row insert (see {@link MultiRowInsert}).
+ */
+class BatchUpdate {
+
+	private final String template;
+	private final int chunkSize;
+	private final MultiRowTemplate multiRowTemplate;
+
+	BatchUpdate(String template, int chunkSize) {
+		this.template = template;
+		this.multiRowTemplate = chunkSize > 1 ? MultiRowTemplate.from(template, chunkSize) : null;
+		this.chunkSize = multiRowTemplate != null ? chunkSize : 0;
+	}
+
+	static BatchUpdate of(Method method, String template, String activeDB) {
+		MultiRowInsert multiRowInsert = method.getAnnotation(MultiRowInsert.class);
+		boolean enabled = multiRowInsert != null && (multiRowInsert.db().length == 0 || Arrays.asList(multiRowInsert.db()).contains(activeDB));
+		return new BatchUpdate(template, enabled ? multiRowInsert.chunkSize() : 0);
+	}
+
+	String getTemplate() {
+		return template;
+	}
+
+	/**
+	 * @return the affected row count for each element of the batch. When a multi row insert is used, the count of
+	 * each row is 1 if the whole chunk has been inserted, or {@link Statement#SUCCESS_NO_INFO}.
+	 */
+	int[] execute(NamedParameterJdbcTemplate jdbc, SqlParameterSource[] batch) {
+		if (multiRowTemplate == null || batch.length < chunkSize) {
+			return jdbc.batchUpdate(template, batch);
+		}
+
+		int chunks = batch.length / chunkSize;
+		SqlParameterSource[] multiRowBatch = new SqlParameterSource[chunks];
+		for (int i = 0; i < chunks; i++) {
+			multiRowBatch[i] = multiRowTemplate.parameters(batch, i * chunkSize);
+		}
+		int[] chunkCounts = jdbc.batchUpdate(multiRowTemplate.sql, multiRowBatch);
+
+		int[] counts = new int[batch.length];
+		for (int i = 0; i < chunks; i++) {
+			Arrays.fill(counts, i * chunkSize, (i + 1) * chunkSize, chunkCounts[i] == chunkSize ? 1 : Statement.SUCCESS_NO_INFO);
+		}
+
+		int remaining = batch.length - chunks * chunkSize;
+		if (remaining > 0) {
+			int[] remainingCounts = jdbc.batchUpdate(template, Arrays.copyOfRange(batch, chunks * chunkSize, batch.length));
+			System.arraycopy(remainingCounts, 0, counts, chunks * chunkSize, remaining);
+		}
+		return counts;
+	}
+
+	/**
+	 * An insert rewritten with multiple VALUES tuples: the parameter "name" of the row i is renamed "name__i".
+	 */
+	static class MultiRowTemplate {
+
+		private static final String PARAMETER_SEPARATORS = "\"':&,;()|=+-*%/\\<>^]";
+
+		final String sql;
+		private final int chunkSize;
+		private final List<String> parameterNames;
+
+		private MultiRowTemplate(String sql, int chunkSize, List<String> parameterNames) {
+			this.sql = sql;
+			this.chunkSize = chunkSize;
+			this.parameterNames = parameterNames;
+		}
+
+		/**
+		 * @return null if the template is not in the form INSERT ... VALUES (...)
+		 */
+		static MultiRowTemplate from(String template, int chunkSize) {
+			String trimmed = template.trim();
+			if (trimmed.endsWith(";")) {
+				trimmed = trimmed.substring(0, trimmed.length() - 1).trim();
+			}
+			String upper = trimmed.toUpperCase(Locale.ENGLISH);
+			int valuesIdx = upper.lastIndexOf("VALUES");
+			if (!upper.startsWith("INSERT") || valuesIdx < 0) {
+				return null;
+			}
+			String tuple = trimmed.substring(valuesIdx + "VALUES".length()).trim();
+			if (!tuple.startsWith("(") || !tuple.endsWith(")") || closingParenthesis(tuple) != tuple.length() - 1) {
+				return null;
+			}
+
+			List<String> parameterNames = new ArrayList<>();
+			List<String> tupleParts = splitOnParameters(tuple, parameterNames);
+			if (tupleParts == null) {
+				return null;
+			}
+
+			StringBuilder sb = new StringBuilder(trimmed.substring(0, valuesIdx)).append("VALUES ");
+			for (int row = 0; row < chunkSize; row++) {
+				if (row > 0) {
+					sb.append(", ");
+				}
+				for (int i = 0; i < tupleParts.size(); i++) {
+					sb.append(tupleParts.get(i));
+					if (i < parameterNames.size()) {
+						sb.append(':').append(rowParameterName(parameterNames.get(i), row));
+					}
+				}
+			}
+			return new MultiRowTemplate(sb.toString(), chunkSize, parameterNames);
+		}
+
+		SqlParameterSource parameters(SqlParameterSource[] batch, int offset) {
+			MapSqlParameterSource ps = new MapSqlParameterSource();
+			for (int row = 0; row < chunkSize; row++) {
+				SqlParameterSource source = batch[offset + row];
+				for (String name : parameterNames) {
+					String rowName = rowParameterName(name, row);
+					if (ps.hasValue(rowName)) {
+						continue;
+					}
+					int sqlType = source.getSqlType(name);
+					if (sqlType == SqlParameterSource.TYPE_UNKNOWN) {
+						ps.addValue(rowName, source.getValue(name));
+					} else {
+						ps.addValue(rowName, source.getValue(name), sqlType, source.getTypeName(name));
+					}
+				}
+			}
+			return ps;
+		}
+
+		private static String rowParameterName(String name, int row) {
+			return name + "__" + row;
+		}
+
+		private static int closingParenthesis(String s) {
+			int depth = 0;
+			boolean inQuote = false;
+			for (int i = 0; i < s.length(); i++) {
+				char c = s.charAt(i);
+				if (c == '\'') {
+					inQuote = !inQuote;
+				} else if (!inQuote && c == '(') {
+					depth++;
+				} else if (!inQuote && c == ')' && --depth == 0) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Same separators as spring's NamedParameterUtils: a name can contain dots (e.g. the properties of a {@link BindBean}).
+		 */
+		private static boolean isParameterSeparator(char c) {
+			return Character.isWhitespace(c) || PARAMETER_SEPARATORS.indexOf(c) >= 0;
+		}
+
+		/**
+		 * Split the tuple in the text between the named parameters, the names are added to parameterNames.
+		 * Return null if there are no named parameters.
+		 */
+		private static List<String> splitOnParameters(String tuple, List<String> parameterNames) {
+			List<String> parts = new ArrayList<>();
+			StringBuilder current = new StringBuilder();
+			boolean inQuote = false;
+			int i = 0;
+			while (i < tuple.length()) {
+				char c = tuple.charAt(i);
+				if (c == '\'') {
+					inQuote = !inQuote;
+				}
+				if (!inQuote && c == ':' && i + 1 < tuple.length() && tuple.charAt(i + 1) == ':') {
+					// postgresql cast
+					current.append("::");
+					i += 2;
+					continue;
+				}
+				if (!inQuote && c == ':' && i + 1 < tuple.length() && Character.isJavaIdentifierStart(tuple.charAt(i + 1))) {
+					int end = i + 1;
+					while (end < tuple.length() && !isParameterSeparator(tuple.charAt(end))) {
+						end++;
+					}
+					parts.add(current.toString());
+					current.setLength(0);
+					parameterNames.add(tuple.substring(i + 1, end));
+					i = end;
+					continue;
+				}
+				current.append(c);
+				i++;
+			}
+			parts.add(current.toString());
+			return parameterNames.isEmpty() ? null : parts;
+		}
+	}
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Accumulate the lookups by key returning a {@code CompletableFuture} and execute them as a single query with the
+ * batch method specified in {@link #method()}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Batched {
+
+	/**
+	 * Name of the batch method, defined in the same interface.
+	 *
+	 * @return
+	 */
+	String method();
+
+	/**
+	 * Name of the property (field or getter) of the returned objects that contain the key.
+	 *
+	 * @return
+	 */
+	String key();
+
+	/**
+	 * Maximum number of keys in a batch: when reached, the batch is executed immediately.
+	 *
+	 * @return
+	 */
+	int maxBatchSize() default 100;
+
+	/**
+	 * Maximum time in milliseconds that a key wait for other keys before executing the batch.
+	 *
+	 * @return
+	 */
+	long windowMillis() default 5;
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import ch.digitalfondue.npjt.mapper.ParameterConverter;
+import org.springframework.beans.BeanUtils;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.util.ReflectionUtils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The readable properties of a class: the getters of a bean or the accessors of a record. The accessors are resolved
+ * once per class as {@link MethodHandle}.
+ */
+class BeanProperties {
+
+	private static final Map<Class<?>, BeanProperties> PROPERTIES = new ConcurrentHashMap<>();
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+	private final List<String> names = new ArrayList<>();
+	private final List<Class<?>> types = new ArrayList<>();
+	private final List<Annotation[]> annotations = new ArrayList<>();
+	private final List<MethodHandle> getters = new ArrayList<>();
+
+	private BeanProperties(Class<?> clazz) {
+		Method[] recordAccessors = recordAccessors(clazz);
+		if (recordAccessors != null) {
+			for (Method accessor : recordAccessors) {
+				add(accessor.getName(), accessor);
+			}
+		} else {
+			for (PropertyDescriptor pd : BeanUtils.getPropertyDescriptors(clazz)) {
+				Method getter = pd.getReadMethod();
+				if (getter != null && getter.getDeclaringClass() != Object.class) {
+					add(pd.getName(), getter);
+				}
+			}
+		}
+	}
+
+	static BeanProperties of(Class<?> clazz) {
+		return PROPERTIES.computeIfAbsent(clazz, BeanProperties::new);
+	}
+
+	private void add(String name, Method getter) {
+		ReflectionUtils.makeAccessible(getter);
+		try {
+			getters.add(MethodHandles.lookup().unreflect(getter).asType(GETTER_TYPE));
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException("Was not able to access the property " + name + " of " + getter.getDeclaringClass().getName(), e);
+		}
+		names.add(name);
+		types.add(getter.getReturnType());
+		annotations.add(getter.getAnnotations());
+	}
+
+	/**
+	 * Return the accessors of the record components, or null if the class is not a record. Records are resolved by
+	 * reflection, as they are not available in the java 8 API.
+	 */
+	private static Method[] recordAccessors(Class<?> clazz) {
+		Method isRecord = ReflectionUtils.findMethod(Class.class, "isRecord");
+		if (isRecord == null || !((Boolean) ReflectionUtils.invokeMethod(isRecord, clazz))) {
+			return null;
+		}
+		Object[] components = (Object[]) ReflectionUtils.invokeMethod(ReflectionUtils.findMethod(Class.class, "getRecordComponents"), clazz);
+		Method[] accessors = new Method[components.length];
+		for (int i = 0; i < components.length; i++) {
+			accessors[i] = (Method) ReflectionUtils.invokeMethod(ReflectionUtils.findMethod(components[i].getClass(), "getAccessor"), components[i]);
+		}
+		return accessors;
+	}
+
+	/**
+	 * Resolve the {@link ParameterConverter} of each property.
+	 *
+	 * @param prefix if not empty, the parameters are named "prefix.property"
+	 */
+	List<ParameterBinding> bindings(String prefix, SortedSet<ParameterConverter> parameterConverters) {
+		List<ParameterBinding> bindings = new ArrayList<>(names.size());
+		for (int i = 0; i < names.size(); i++) {
+			String name = prefix.isEmpty() ? names.get(i) : prefix + "." + names.get(i);
+			bindings.add(ParameterBinding.resolve(name, types.get(i), annotations.get(i), parameterConverters));
+		}
+		return bindings;
+	}
+
+	/**
+	 * Bind the properties of the bean with the bindings returned by {@link #bindings(String, SortedSet)}. If the bean is
+	 * null, all the parameters are bound to null.
+	 */
+	void bind(Object bean, List<ParameterBinding> bindings, NamedParameterJdbcTemplate jdbc, MapSqlParameterSource ps) {
+		for (int i = 0; i < getters.size(); i++) {
+			bindings.get(i).bind(bean == null ? null : get(i, bean), jdbc, ps);
+		}
+	}
+
+	private Object get(int i, Object bean) {
+		try {
+			return (Object) getters.get(i).invokeExact(bean);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Execute a modifying query for each element of an Iterator, Iterable or Stream parameter, as JDBC batches of
+ * {@link #chunkSize()} elements.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ChunkedBatch {
+
+	int chunkSize() default 1000;
+
+	/**
+	 * If true and no transaction is active, each chunk is executed and committed in its own transaction: in case of
+	 * error only the current chunk is rolled back.
+	 *
+	 * @return
+	 */
+	boolean commitEachChunk() default false;
+}
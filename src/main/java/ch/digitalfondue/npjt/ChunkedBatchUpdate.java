@@ -0,0 +1,213 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import ch.digitalfondue.npjt.mapper.ParameterConverter;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Execute a method annotated with {@link ChunkedBatch}: the elements of the input parameter are bound and executed in
+ * chunks, as they are consumed.
+ */
+class ChunkedBatchUpdate {
+
+	private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+	private final BatchUpdate batchUpdate;
+	private final PlatformTransactionManager transactionManager;
+	private final int chunkSize;
+	private final boolean commitEachChunk;
+	private final int inputIndex;
+	private final List<Integer> sharedIndexes = new ArrayList<>();
+	private final List<ParameterBinding> sharedBindings = new ArrayList<>();
+	private final Class<?> returnType;
+	private final SortedSet<ParameterConverter> parameterConverters;
+	private final List<Integer> sharedBeanIndexes = new ArrayList<>();
+	private final List<BeanProperties> sharedBeanProperties = new ArrayList<>();
+	private final List<List<ParameterBinding>> sharedBeanBindings = new ArrayList<>();
+	private final Map<Class<?>, List<ParameterBinding>> beanBindings = new ConcurrentHashMap<>();
+	private final Map<Class<?>, ParameterConverter> valueConverters = new ConcurrentHashMap<>();
+
+	ChunkedBatchUpdate(Method method, BatchUpdate batchUpdate, PlatformTransactionManager transactionManager, SortedSet<ParameterConverter> parameterConverters) {
+		ChunkedBatch chunkedBatch = method.getAnnotation(ChunkedBatch.class);
+		this.batchUpdate = batchUpdate;
+		this.transactionManager = transactionManager;
+		this.chunkSize = Math.max(1, chunkedBatch.chunkSize());
+		this.commitEachChunk = chunkedBatch.commitEachChunk();
+		this.parameterConverters = parameterConverters;
+		this.returnType = method.getReturnType();
+		if (returnType != void.class && returnType != int.class && returnType != Integer.class && returnType != long.class && returnType != Long.class) {
+			throw new IllegalArgumentException(String.format("method %s annotated with @ChunkedBatch must return void, int or long", method.getName()));
+		}
+
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+		int input = -1;
+		for (int i = 0; i < parameterTypes.length; i++) {
+			String name = QueryType.parameterName(parameterAnnotations[i]);
+			BindBean bindBean = QueryType.withType(parameterAnnotations[i], BindBean.class);
+			if (name != null) {
+				sharedIndexes.add(i);
+				sharedBindings.add(ParameterBinding.resolve(name, parameterTypes[i], parameterAnnotations[i], parameterConverters));
+			} else if (bindBean != null) {
+				BeanProperties properties = BeanProperties.of(parameterTypes[i]);
+				sharedBeanIndexes.add(i);
+				sharedBeanProperties.add(properties);
+				sharedBeanBindings.add(properties.bindings(bindBean.value(), parameterConverters));
+			} else if (input == -1 && isInput(parameterTypes[i])) {
+				input = i;
+			}
+		}
+		if (input == -1) {
+			throw new IllegalArgumentException(String.format("method %s annotated with @ChunkedBatch must have an Iterator, Iterable or Stream parameter", method.getName()));
+		}
+		this.inputIndex = input;
+
+		Class<?> elementType = elementType(method.getGenericParameterTypes()[input]);
+		if (elementType != Object.class && !SqlParameterSource.class.isAssignableFrom(elementType) && !Map.class.isAssignableFrom(elementType)) {
+			beanBindings.put(elementType, beanBindings(elementType));
+		}
+	}
+
+	private static boolean isInput(Class<?> type) {
+		return Iterator.class.isAssignableFrom(type) || Iterable.class.isAssignableFrom(type) || Stream.class.isAssignableFrom(type);
+	}
+
+	private static Class<?> elementType(Type type) {
+		if (type instanceof ParameterizedType) {
+			Type element = ((ParameterizedType) type).getActualTypeArguments()[0];
+			if (element instanceof Class) {
+				return (Class<?>) element;
+			} else if (element instanceof ParameterizedType) {
+				return (Class<?>) ((ParameterizedType) element).getRawType();
+			}
+		}
+		return Object.class;
+	}
+
+	/**
+	 * A Stream input is closed once consumed, also on failure.
+	 */
+	Object execute(NamedParameterJdbcTemplate jdbc, Object[] args) {
+		Object input = args[inputIndex];
+		try {
+			return execute(jdbc, args, toIterator(input));
+		} finally {
+			if (input instanceof Stream) {
+				((Stream<?>) input).close();
+			}
+		}
+	}
+
+	private Object execute(NamedParameterJdbcTemplate jdbc, Object[] args, Iterator<?> input) {
+
+		MapSqlParameterSource shared = new MapSqlParameterSource();
+		for (int i = 0; i < sharedBindings.size(); i++) {
+			sharedBindings.get(i).bind(args[sharedIndexes.get(i)], jdbc, shared);
+		}
+		for (int i = 0; i < sharedBeanBindings.size(); i++) {
+			sharedBeanProperties.get(i).bind(args[sharedBeanIndexes.get(i)], sharedBeanBindings.get(i), jdbc, shared);
+		}
+
+		TransactionTemplate transactionTemplate = commitEachChunk && !TransactionSynchronizationManager.isActualTransactionActive()
+				? new TransactionTemplate(transactionManager)
+				: null;
+
+		long total = 0;
+		List<SqlParameterSource> chunk = new ArrayList<>(chunkSize);
+		while (input.hasNext()) {
+			chunk.add(bind(input.next(), jdbc, shared));
+			if (chunk.size() == chunkSize || !input.hasNext()) {
+				SqlParameterSource[] batch = chunk.toArray(new SqlParameterSource[0]);
+				chunk.clear();
+				int[] counts = transactionTemplate == null
+						? batchUpdate.execute(jdbc, batch)
+						: transactionTemplate.execute(status -> batchUpdate.execute(jdbc, batch));
+				for (int count : Objects.requireNonNull(counts)) {
+					total += Math.max(0, count);
+				}
+			}
+		}
+
+		if (returnType == int.class || returnType == Integer.class) {
+			return (int) total;
+		} else if (returnType == long.class || returnType == Long.class) {
+			return total;
+		}
+		return null;
+	}
+
+	private static Iterator<?> toIterator(Object input) {
+		if (input == null) {
+			return Collections.emptyIterator();
+		} else if (input instanceof Iterator) {
+			return (Iterator<?>) input;
+		} else if (input instanceof Iterable) {
+			return ((Iterable<?>) input).iterator();
+		} else {
+			return ((Stream<?>) input).iterator();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private SqlParameterSource bind(Object element, NamedParameterJdbcTemplate jdbc, MapSqlParameterSource shared) {
+		if (element instanceof SqlParameterSource && shared.getValues().isEmpty()) {
+			return (SqlParameterSource) element;
+		}
+		MapSqlParameterSource ps = new MapSqlParameterSource(shared.getValues());
+		if (element instanceof SqlParameterSource) {
+			SqlParameterSource source = (SqlParameterSource) element;
+			for (String name : Objects.requireNonNull(source.getParameterNames())) {
+				ps.addValue(name, source.getValue(name), source.getSqlType(name), source.getTypeName(name));
+			}
+		} else if (element instanceof Map) {
+			for (Map.Entry<String, ?> kv : ((Map<String, ?>) element).entrySet()) {
+				bindValue(kv.getKey(), kv.getValue(), jdbc, ps);
+			}
+		} else {
+			Class<?> elementType = element.getClass();
+			BeanProperties.of(elementType).bind(element, beanBindings.computeIfAbsent(elementType, this::beanBindings), jdbc, ps);
+		}
+		return ps;
+	}
+
+	private void bindValue(String name, Object value, NamedParameterJdbcTemplate jdbc, MapSqlParameterSource ps) {
+		if (value == null) {
+			ps.addValue(name, null);
+			return;
+		}
+		Class<?> type = value.getClass();
+		ParameterConverter converter = valueConverters.computeIfAbsent(type, c -> ParameterBinding.resolve(name, c, NO_ANNOTATIONS, parameterConverters).getConverter());
+		ParameterBinding.process(converter, jdbc, name, value, type, NO_ANNOTATIONS, ps);
+	}
+
+	private List<ParameterBinding> beanBindings(Class<?> elementType) {
+		return BeanProperties.of(elementType).bindings("", parameterConverters);
+	}
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.*;
+
+/**
+ * The result of a select stored column by column in primitive arrays. Null numeric values are stored as 0, see
+ * {@link #isNull(String, int)}.
+ */
+public final class ColumnarResult {
+
+	private static final int LONG = 0;
+	private static final int DOUBLE = 1;
+	private static final int OBJECT = 2;
+
+	private final List<String> columnNames;
+	private final Map<String, Integer> columnIndexes = new HashMap<>();
+	private final Object[] columns;
+	private final BitSet[] nulls;
+	private final int size;
+
+	private ColumnarResult(List<String> columnNames, Object[] columns, BitSet[] nulls, int size) {
+		this.columnNames = Collections.unmodifiableList(columnNames);
+		for (int i = 0; i < columnNames.size(); i++) {
+			columnIndexes.put(columnNames.get(i).toUpperCase(Locale.ENGLISH), i);
+		}
+		this.columns = columns;
+		this.nulls = nulls;
+		this.size = size;
+	}
+
+	static ColumnarResult read(ResultSet rs) throws SQLException {
+		ResultSetMetaData metaData = rs.getMetaData();
+		int columnCount = metaData.getColumnCount();
+		List<String> names = new ArrayList<>(columnCount);
+		int[] kinds = new int[columnCount];
+		Object[] columns = new Object[columnCount];
+		BitSet[] nulls = new BitSet[columnCount];
+		for (int i = 0; i < columnCount; i++) {
+			names.add(JdbcUtils.lookupColumnName(metaData, i + 1));
+			kinds[i] = kind(metaData, i + 1);
+			columns[i] = kinds[i] == LONG ? new long[16] : kinds[i] == DOUBLE ? new double[16] : new Object[16];
+			nulls[i] = new BitSet();
+		}
+
+		int size = 0;
+		while (rs.next()) {
+			for (int i = 0; i < columnCount; i++) {
+				columns[i] = PrimitiveArrays.ensureCapacity(columns[i], size);
+				if (kinds[i] == LONG) {
+					((long[]) columns[i])[size] = rs.getLong(i + 1);
+				} else if (kinds[i] == DOUBLE) {
+					((double[]) columns[i])[size] = rs.getDouble(i + 1);
+				} else {
+					((Object[]) columns[i])[size] = JdbcUtils.getResultSetValue(rs, i + 1);
+				}
+				if (rs.wasNull()) {
+					nulls[i].set(size);
+				}
+			}
+			size++;
+		}
+
+		for (int i = 0; i < columnCount; i++) {
+			columns[i] = PrimitiveArrays.copyOf(columns[i], size);
+		}
+		return new ColumnarResult(names, columns, nulls, size);
+	}
+
+	private static int kind(ResultSetMetaData metaData, int column) throws SQLException {
+		switch (metaData.getColumnType(column)) {
+		case Types.TINYINT:
+		case Types.SMALLINT:
+		case Types.INTEGER:
+		case Types.BIGINT:
+			return LONG;
+		case Types.REAL:
+		case Types.FLOAT:
+		case Types.DOUBLE:
+			return DOUBLE;
+		case Types.DECIMAL:
+		case Types.NUMERIC:
+			// a double would lose the exact value: only the decimals that fit in a long are not boxed
+			int precision = metaData.getPrecision(column);
+			return metaData.getScale(column) == 0 && precision > 0 && precision <= 18 ? LONG : OBJECT;
+		default:
+			return OBJECT;
+		}
+	}
+
+	/**
+	 * @return the number of rows
+	 */
+	public int size() {
+		return size;
+	}
+
+	public List<String> getColumnNames() {
+		return columnNames;
+	}
+
+	/**
+	 * @param column the column name (case insensitive)
+	 * @return the values of an integer or decimal without scale column
+	 */
+	public long[] getLongs(String column) {
+		return column(column, long[].class);
+	}
+
+	/**
+	 * @param column the column name (case insensitive)
+	 * @return the values of a floating point column
+	 */
+	public double[] getDoubles(String column) {
+		return column(column, double[].class);
+	}
+
+	/**
+	 * @param column the column name (case insensitive)
+	 * @return the values of a non numeric or scaled decimal column
+	 */
+	public Object[] getObjects(String column) {
+		return column(column, Object[].class);
+	}
+
+	public boolean isNull(String column, int row) {
+		return nulls[index(column)].get(row);
+	}
+
+	private <T> T column(String column, Class<T> type) {
+		Object values = columns[index(column)];
+		if (!type.isInstance(values)) {
+			throw new IllegalArgumentException("The column " + column + " is stored as " + values.getClass().getSimpleName() + ", not as " + type.getSimpleName());
+		}
+		return type.cast(values);
+	}
+
+	private int index(String column) {
+		Integer idx = columnIndexes.get(column.toUpperCase(Locale.ENGLISH));
+		if (idx == null) {
+			throw new IllegalArgumentException("The column " + column + " is not present, available columns: " + columnNames);
+		}
+		return idx;
+	}
+}
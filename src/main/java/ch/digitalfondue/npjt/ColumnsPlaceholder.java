@@ -0,0 +1,109 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import org.springframework.util.ClassUtils;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Expand the <code>{columns}</code> and <code>{columns:ClassName}</code> placeholders of a query with the columns of the
+ * {@link ConstructorAnnotationRowMapper.Column} annotations of the class constructor.
+ */
+class ColumnsPlaceholder {
+
+	private static final Pattern PLACEHOLDER = Pattern.compile("\\{columns(?::([\\w.$]+))?}");
+
+	private ColumnsPlaceholder() {
+	}
+
+	static String expand(String query, Class<?> repository, Method method) {
+		if (query.indexOf("{columns") < 0) {
+			return query;
+		}
+		Matcher matcher = PLACEHOLDER.matcher(query);
+		StringBuffer sb = new StringBuffer();
+		while (matcher.find()) {
+			Class<?> entity = resolve(matcher.group(1), repository, method);
+			matcher.appendReplacement(sb, Matcher.quoteReplacement(String.join(", ", columns(entity))));
+		}
+		matcher.appendTail(sb);
+		return sb.toString();
+	}
+
+	static List<String> columns(Class<?> entity) {
+		if (!ConstructorAnnotationRowMapper.hasConstructorInTheCorrectForm(entity)) {
+			throw new IllegalArgumentException("The class " + entity.getName() + " must have exactly one public constructor with all the parameters annotated with @Column");
+		}
+		Constructor<?> constructor = entity.getConstructors()[0];
+		List<String> columns = new ArrayList<>();
+		for (Annotation[] annotations : constructor.getParameterAnnotations()) {
+			for (Annotation a : annotations) {
+				if (a instanceof ConstructorAnnotationRowMapper.Column) {
+					columns.add(((ConstructorAnnotationRowMapper.Column) a).value());
+				}
+			}
+		}
+		return columns;
+	}
+
+	private static Class<?> resolve(String name, Class<?> repository, Method method) {
+		Class<?> mapped = mappedClass(method);
+		if (name == null) {
+			return mapped;
+		}
+		if (name.equals(mapped.getSimpleName()) || name.equals(mapped.getName())) {
+			return mapped;
+		}
+		ClassLoader classLoader = repository.getClassLoader();
+		List<String> candidates = new ArrayList<>();
+		candidates.add(name);
+		candidates.add(ClassUtils.getPackageName(repository) + "." + name);
+		for (Class<?> c = repository; c != null; c = c.getDeclaringClass()) {
+			candidates.add(c.getName() + "$" + name);
+		}
+		for (String candidate : candidates) {
+			if (ClassUtils.isPresent(candidate, classLoader)) {
+				return ClassUtils.resolveClassName(candidate, classLoader);
+			}
+		}
+		throw new IllegalArgumentException("Was not able to resolve the class " + name + " of the placeholder {columns:" + name + "} in method " + method.getName() + " of " + repository.getName());
+	}
+
+	/**
+	 * The class returned by the method: T, List&lt;T&gt; or Optional&lt;T&gt;.
+	 */
+	private static Class<?> mappedClass(Method method) {
+		Class<?> returnType = method.getReturnType();
+		Type genericReturnType = method.getGenericReturnType();
+		if ((List.class.isAssignableFrom(returnType) || returnType == Optional.class) && genericReturnType instanceof ParameterizedType) {
+			Type element = ((ParameterizedType) genericReturnType).getActualTypeArguments()[0];
+			if (element instanceof Class) {
+				return (Class<?>) element;
+			}
+		}
+		return returnType;
+	}
+}
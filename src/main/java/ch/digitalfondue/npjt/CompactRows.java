@@ -0,0 +1,154 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Immutable rows as Map&lt;String, Object&gt; with case insensitive keys, sharing the same column index.
+ */
+public final class CompactRows {
+
+	private static final ResultSetExtractor<List<Map<String, Object>>> EXTRACTOR = CompactRows::extract;
+
+	private CompactRows() {
+	}
+
+	public static ResultSetExtractor<List<Map<String, Object>>> extractor() {
+		return EXTRACTOR;
+	}
+
+	static Map<String, Object> single(List<Map<String, Object>> rows) {
+		if (rows.size() != 1) {
+			throw new IncorrectResultSizeDataAccessException(1, rows.size());
+		}
+		return rows.get(0);
+	}
+
+	private static List<Map<String, Object>> extract(ResultSet rs) throws SQLException {
+		ResultSetMetaData metaData = rs.getMetaData();
+		int columnCount = metaData.getColumnCount();
+		String[] names = new String[columnCount];
+		for (int i = 0; i < columnCount; i++) {
+			names[i] = JdbcUtils.lookupColumnName(metaData, i + 1);
+		}
+		ColumnIndex index = new ColumnIndex(names);
+		List<Map<String, Object>> rows = new ArrayList<>();
+		while (rs.next()) {
+			Object[] values = new Object[columnCount];
+			for (int i = 0; i < columnCount; i++) {
+				values[i] = JdbcUtils.getResultSetValue(rs, i + 1);
+			}
+			rows.add(new Row(index, values));
+		}
+		return rows;
+	}
+
+	private static class ColumnIndex {
+		private final String[] names;
+		private final Map<String, Integer> indexes = new LinkedHashMap<>();
+		// the column of each distinct key, in the order of the first occurrence
+		private final int[] columns;
+
+		ColumnIndex(String[] names) {
+			this.names = names;
+			// as in spring jdbc, if a column name is duplicated, the last one wins
+			for (int i = 0; i < names.length; i++) {
+				indexes.put(names[i].toLowerCase(Locale.ENGLISH), i);
+			}
+			this.columns = new int[indexes.size()];
+			int i = 0;
+			for (Integer column : indexes.values()) {
+				columns[i++] = column;
+			}
+		}
+
+		int indexOf(Object key) {
+			if (!(key instanceof String)) {
+				return -1;
+			}
+			Integer idx = indexes.get(((String) key).toLowerCase(Locale.ENGLISH));
+			return idx == null ? -1 : idx;
+		}
+	}
+
+	private static class Row extends AbstractMap<String, Object> {
+
+		private final ColumnIndex index;
+		private final Object[] values;
+
+		Row(ColumnIndex index, Object[] values) {
+			this.index = index;
+			this.values = values;
+		}
+
+		@Override
+		public Object get(Object key) {
+			int i = index.indexOf(key);
+			return i < 0 ? null : values[i];
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return index.indexOf(key) >= 0;
+		}
+
+		@Override
+		public int size() {
+			return index.columns.length;
+		}
+
+		@Override
+		public Set<Entry<String, Object>> entrySet() {
+			return new AbstractSet<Entry<String, Object>>() {
+				@Override
+				public Iterator<Entry<String, Object>> iterator() {
+					return new Iterator<Entry<String, Object>>() {
+						private int i = 0;
+
+						@Override
+						public boolean hasNext() {
+							return i < index.columns.length;
+						}
+
+						@Override
+						public Entry<String, Object> next() {
+							if (i >= index.columns.length) {
+								throw new NoSuchElementException();
+							}
+							int column = index.columns[i];
+							Entry<String, Object> entry = new SimpleImmutableEntry<>(index.names[column], values[column]);
+							i++;
+							return entry;
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return index.columns.length;
+				}
+			};
+		}
+	}
+}
@@ -96,13 +96,22 @@ public class ConstructorAnnotationRowMapper<T> implements RowMapper<T> {
 
 	@Override
 	public T mapRow(ResultSet rs, int rowNum) throws SQLException {
+		return newInstance(mapValues(rs));
+	}
+
+	/**
+	 * Map the columns of the current row to the constructor arguments.
+	 */
+	Object[] mapValues(ResultSet rs) throws SQLException {
 		Object[] vals = new Object[mappedColumn.length];
 
 		for(int i = 0; i < mappedColumn.length; i++) {
 			vals[i] = mappedColumn[i].getObject(rs);
 		}
-		
+		return vals;
+	}
 
+	T newInstance(Object[] vals) throws SQLException {
 		try {
 			return con.newInstance(vals);
 		} catch (ReflectiveOperationException e) {
@@ -131,7 +140,7 @@ public class ConstructorAnnotationRowMapper<T> implements RowMapper<T> {
 				String name = ((Column) a).value();
 				for(ColumnMapperFactory factory : columnMapperFactories) {
 					if(factory.accept(paramType, annotations)) {
-						return factory.build(name, paramType);
+						return factory.build(name, paramType, annotations);
 					}
 				}
 				throw new IllegalStateException(
@@ -0,0 +1,44 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Group the concurrent executions of a modifying query in a single transaction. If a transaction is already active,
+ * the query is executed immediately.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface GroupCommit {
+
+	/**
+	 * Maximum number of calls executed in a single transaction.
+	 *
+	 * @return
+	 */
+	int maxBatchSize() default 100;
+
+	/**
+	 * Time in microseconds that the leader wait for other callers before executing the group.
+	 *
+	 * @return
+	 */
+	long maxWaitMicros() default 200;
+}
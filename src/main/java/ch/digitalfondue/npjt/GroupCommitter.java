@@ -0,0 +1,161 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Execute the concurrent calls of a method annotated with {@link GroupCommit} in a single transaction.
+ */
+class GroupCommitter {
+
+	private final NamedParameterJdbcTemplate jdbc;
+	private final TransactionTemplate transactionTemplate;
+	private final BatchUpdate batchUpdate;
+	private final boolean asBatch;
+	private final boolean returnCount;
+	private final int maxBatchSize;
+	private final long maxWaitNanos;
+
+	private final Queue<Call> queue = new ConcurrentLinkedQueue<>();
+	private final ReentrantLock lock = new ReentrantLock();
+	// signaled when the leader release the leadership, after having completed its group
+	private final Condition leaderReleased = lock.newCondition();
+	private boolean leader;
+
+	GroupCommitter(NamedParameterJdbcTemplate jdbc, PlatformTransactionManager transactionManager, BatchUpdate batchUpdate, Method method, GroupCommit groupCommit) {
+		this.jdbc = jdbc;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.batchUpdate = batchUpdate;
+		Class<?> returnType = method.getReturnType();
+		this.returnCount = returnType == int.class || returnType == Integer.class;
+		this.asBatch = returnCount || returnType == void.class;
+		this.maxBatchSize = Math.max(1, groupCommit.maxBatchSize());
+		this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(groupCommit.maxWaitMicros());
+	}
+
+	/**
+	 * @param parameters the parameters used when the group is executed as a JDBC batch
+	 * @param single the execution of the call alone
+	 */
+	Object execute(SqlParameterSource parameters, Supplier<Object> single) {
+		Call call = new Call(parameters, single);
+		queue.add(call);
+		lock.lock();
+		try {
+			while (!call.result.isDone()) {
+				if (!leader) {
+					leader = true;
+					lock.unlock();
+					try {
+						lead();
+					} finally {
+						lock.lock();
+						leader = false;
+						leaderReleased.signalAll();
+					}
+				} else {
+					// another thread is the leader: wait until it has executed its group
+					leaderReleased.awaitUninterruptibly();
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+		return SingleFlightGroup.await(call.result);
+	}
+
+	private void lead() {
+		if (maxWaitNanos > 0 && queue.size() < maxBatchSize) {
+			LockSupport.parkNanos(maxWaitNanos);
+		}
+		List<Call> group = new ArrayList<>();
+		Call c;
+		while (group.size() < maxBatchSize && (c = queue.poll()) != null) {
+			group.add(c);
+		}
+		if (group.isEmpty()) {
+			return;
+		}
+
+		List<Object> results;
+		try {
+			results = transactionTemplate.execute(status -> executeGroup(group));
+		} catch (RuntimeException | Error e) {
+			// execute each call alone, so only the failing ones will receive an error
+			for (Call call : group) {
+				executeAlone(call);
+			}
+			return;
+		}
+		for (int i = 0; i < group.size(); i++) {
+			group.get(i).result.complete(results.get(i));
+		}
+	}
+
+	private List<Object> executeGroup(List<Call> group) {
+		List<Object> results = new ArrayList<>(group.size());
+		if (asBatch) {
+			SqlParameterSource[] batch = new SqlParameterSource[group.size()];
+			for (int i = 0; i < batch.length; i++) {
+				batch[i] = group.get(i).parameters;
+			}
+			int[] counts = batchUpdate.execute(jdbc, batch);
+			for (int count : counts) {
+				results.add(returnCount ? count : null);
+			}
+		} else {
+			for (Call call : group) {
+				results.add(call.single.get());
+			}
+		}
+		return results;
+	}
+
+	private void executeAlone(Call call) {
+		try {
+			call.result.complete(transactionTemplate.execute(status -> call.single.get()));
+		} catch (RuntimeException | Error e) {
+			call.result.completeExceptionally(e);
+		}
+	}
+
+	private static class Call {
+		private final SqlParameterSource parameters;
+		private final Supplier<Object> single;
+		private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+		Call(SqlParameterSource parameters, Supplier<Object> single) {
+			this.parameters = parameters;
+			this.single = single;
+		}
+	}
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cross node invalidation of the cache regions through a log table with a SEQ and a REGION column. The skipped
+ * sequences are polled again for {@link #GAP_TIMEOUT_SECONDS}, as they may belong to transactions not yet committed.
+ */
+class InvalidationLog {
+
+	static final long GAP_TIMEOUT_SECONDS = 60;
+	private static final int MAX_GAPS = 1000;
+
+	private final NamedParameterJdbcTemplate jdbc;
+	private final TransactionTemplate outsideTransaction;
+	private final String insertQuery;
+	private final String maxSequenceQuery;
+	private final String pollQuery;
+	private final String pollWithGapsQuery;
+	private final long pollNanos;
+	private final Map<String, List<Runnable>> listeners = new ConcurrentHashMap<>();
+	private final AtomicBoolean polling = new AtomicBoolean();
+	// skipped sequence -> time of the poll that skipped it, only accessed by the polling thread
+	private final Map<Long, Long> gaps = new LinkedHashMap<>();
+
+	private volatile boolean initialized;
+	private volatile long lastSequence;
+	private volatile long nextPoll;
+
+	/**
+	 * @param outsideTransaction suspends the caller's transaction: the log is read with the committed rows only
+	 */
+	InvalidationLog(NamedParameterJdbcTemplate jdbc, TransactionTemplate outsideTransaction, String table, long pollMillis) {
+		this.jdbc = jdbc;
+		this.outsideTransaction = outsideTransaction;
+		this.insertQuery = "INSERT INTO " + table + "(REGION) VALUES(:region)";
+		this.maxSequenceQuery = "SELECT MAX(SEQ) FROM " + table;
+		this.pollQuery = "SELECT SEQ, REGION FROM " + table + " WHERE SEQ > :seq ORDER BY SEQ";
+		this.pollWithGapsQuery = "SELECT SEQ, REGION FROM " + table + " WHERE SEQ > :seq OR SEQ IN (:gaps) ORDER BY SEQ";
+		this.pollNanos = TimeUnit.MILLISECONDS.toNanos(pollMillis);
+	}
+
+	/**
+	 * Register the action that evicts the local entries of the given region.
+	 */
+	void register(String region, Runnable evict) {
+		listeners.computeIfAbsent(region, r -> new CopyOnWriteArrayList<>()).add(evict);
+	}
+
+	/**
+	 * Start following the log from its current end: must be called before loading the data of a region.
+	 */
+	synchronized void init() {
+		if (!initialized) {
+			Long max = outsideTransaction.execute(status -> jdbc.queryForObject(maxSequenceQuery, new MapSqlParameterSource(), Long.class));
+			lastSequence = max != null ? max : Long.MIN_VALUE;
+			nextPoll = System.nanoTime() + pollNanos;
+			initialized = true;
+		}
+	}
+
+	/**
+	 * Apply the invalidations appended by all the nodes since the last poll, if the poll interval is elapsed. Only one
+	 * caller polls at a time, the others continue without waiting.
+	 */
+	void poll() {
+		if (!initialized || System.nanoTime() - nextPoll < 0 || !polling.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			long now = System.nanoTime();
+			Set<String> regions = new LinkedHashSet<>();
+			long[] sequence = { lastSequence };
+			MapSqlParameterSource parameters = new MapSqlParameterSource("seq", lastSequence).addValue("gaps", new ArrayList<>(gaps.keySet()));
+			outsideTransaction.execute(status -> {
+				jdbc.query(gaps.isEmpty() ? pollQuery : pollWithGapsQuery, parameters, (RowCallbackHandler) rs -> {
+					long seq = rs.getLong("SEQ");
+					if (gaps.remove(seq) == null && seq > sequence[0]) {
+						// the rows are ordered: the sequences between the last one seen and this one are not committed
+						// yet (or rolled back)
+						for (long s = sequence[0] + 1; sequence[0] != Long.MIN_VALUE && s < seq && gaps.size() < MAX_GAPS; s++) {
+							gaps.put(s, now);
+						}
+						sequence[0] = seq;
+					}
+					regions.add(rs.getString("REGION"));
+				});
+				return null;
+			});
+			gaps.values().removeIf(skipped -> now - skipped > TimeUnit.SECONDS.toNanos(GAP_TIMEOUT_SECONDS));
+			lastSequence = sequence[0];
+			nextPoll = now + pollNanos;
+			regions.forEach(this::evict);
+		} finally {
+			polling.set(false);
+		}
+	}
+
+	/**
+	 * Append the invalidation of the given regions in the current transaction. The local entries are evicted after the
+	 * commit (or immediately without transaction).
+	 */
+	void append(String[] regions) {
+		SqlParameterSource[] parameters = new SqlParameterSource[regions.length];
+		for (int i = 0; i < regions.length; i++) {
+			parameters[i] = new MapSqlParameterSource("region", regions[i]);
+		}
+		jdbc.batchUpdate(insertQuery, parameters);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					evict(regions);
+				}
+			});
+		} else {
+			evict(regions);
+		}
+	}
+
+	private void evict(String... regions) {
+		for (String region : regions) {
+			listeners.getOrDefault(region, Collections.emptyList()).forEach(Runnable::run);
+		}
+	}
+}
@@ -0,0 +1,197 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accumulate the keys of a method annotated with {@link Batched} and execute them using the batch method.
+ */
+class KeyBatcher {
+
+	private static final ScheduledExecutorService SCHEDULER = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+		Thread t = new Thread(r, "npjt-key-batcher");
+		t.setDaemon(true);
+		return t;
+	});
+
+	// the batch queries are not executed in the scheduler threads: a slow query would delay the other batchers
+	private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+		Thread t = new Thread(r, "npjt-key-batch");
+		t.setDaemon(true);
+		return t;
+	});
+
+	private final Object proxy;
+	private final Method batchMethod;
+	private final boolean keysAsList;
+	private final String keyProperty;
+	private final int maxBatchSize;
+	private final long windowMillis;
+	private final boolean returnFuture;
+	private final Class<?> resultType;
+
+	private final Object lock = new Object();
+	private List<Pending> current = new ArrayList<>();
+
+	KeyBatcher(Object proxy, Class<?> clazz, Method method, Batched batched) {
+		this.proxy = proxy;
+		this.batchMethod = validate(clazz, method, batched);
+		this.keysAsList = batchMethod.getParameterTypes()[0].isAssignableFrom(ArrayList.class);
+		this.keyProperty = batched.key();
+		this.maxBatchSize = Math.max(1, batched.maxBatchSize());
+		this.windowMillis = batched.windowMillis();
+		this.returnFuture = method.getReturnType() == CompletableFuture.class;
+		this.resultType = returnFuture ? rawClass(((ParameterizedType) method.getGenericReturnType()).getActualTypeArguments()[0]) : method.getReturnType();
+	}
+
+	/**
+	 * Check the annotated method and return its batch method, which must accept a List, a Set or a Collection.
+	 */
+	static Method validate(Class<?> clazz, Method method, Batched batched) {
+		if (method.getParameterCount() != 1) {
+			throw new IllegalArgumentException(String.format("method %s annotated with @Batched in interface %s must have exactly one parameter", method.getName(), clazz.getSimpleName()));
+		}
+		for (Method m : clazz.getMethods()) {
+			if (m.getName().equals(batched.method()) && m.getParameterCount() == 1
+					&& Collection.class.isAssignableFrom(m.getParameterTypes()[0])
+					&& (m.getParameterTypes()[0].isAssignableFrom(ArrayList.class) || m.getParameterTypes()[0].isAssignableFrom(LinkedHashSet.class))
+					&& m.getReturnType().isAssignableFrom(List.class)) {
+				return m;
+			}
+		}
+		throw new IllegalArgumentException(String.format("missing batch method %s(List, Set or Collection) returning a List in interface %s", batched.method(), clazz.getSimpleName()));
+	}
+
+	private static Class<?> rawClass(Type type) {
+		return type instanceof ParameterizedType ? (Class<?>) ((ParameterizedType) type).getRawType() : (Class<?>) type;
+	}
+
+	Object invoke(Object key) {
+		Pending pending = new Pending(key);
+		// a synchronous caller would wait the window for batching only its own key
+		if (!returnFuture || TransactionSynchronizationManager.isActualTransactionActive()) {
+			execute(Collections.singletonList(pending));
+		} else {
+			enqueue(pending);
+		}
+		return returnFuture ? pending.result : SingleFlightGroup.await(pending.result);
+	}
+
+	private void enqueue(Pending pending) {
+		List<Pending> toExecute = null;
+		List<Pending> toSchedule = null;
+		synchronized (lock) {
+			current.add(pending);
+			if (current.size() >= maxBatchSize) {
+				toExecute = current;
+				current = new ArrayList<>();
+			} else if (current.size() == 1) {
+				toSchedule = current;
+			}
+		}
+
+		if (toExecute != null) {
+			execute(toExecute);
+		} else if (toSchedule != null) {
+			List<Pending> batch = toSchedule;
+			SCHEDULER.schedule(() -> EXECUTOR.execute(() -> executeIfCurrent(batch)), windowMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void executeIfCurrent(List<Pending> batch) {
+		synchronized (lock) {
+			if (current != batch) {
+				// already executed as it has reached the max batch size
+				return;
+			}
+			current = new ArrayList<>();
+		}
+		execute(batch);
+	}
+
+	private void execute(List<Pending> batch) {
+		try {
+			Set<Object> keys = new LinkedHashSet<>();
+			for (Pending p : batch) {
+				keys.add(p.key);
+			}
+			List<?> results = (List<?>) ReflectionUtils.invokeMethod(batchMethod, proxy, keysAsList ? new ArrayList<>(keys) : keys);
+			Map<Object, List<Object>> byKey = new HashMap<>();
+			for (Object res : results) {
+				Object key = normalize(PropertyExtractors.extract(res, keyProperty));
+				byKey.computeIfAbsent(key, k -> new ArrayList<>()).add(res);
+			}
+			for (Pending p : batch) {
+				complete(p, byKey.getOrDefault(normalize(p.key), Collections.emptyList()));
+			}
+		} catch (RuntimeException | Error e) {
+			for (Pending p : batch) {
+				p.result.completeExceptionally(e);
+			}
+		}
+	}
+
+	private void complete(Pending pending, List<Object> res) {
+		if (resultType.isAssignableFrom(List.class)) {
+			pending.result.complete(res);
+		} else if (res.size() > 1) {
+			pending.result.completeExceptionally(new IncorrectResultSizeDataAccessException(1, res.size()));
+		} else if (resultType.isAssignableFrom(Optional.class)) {
+			pending.result.complete(res.isEmpty() ? Optional.empty() : Optional.ofNullable(res.get(0)));
+		} else if (res.isEmpty()) {
+			pending.result.completeExceptionally(new EmptyResultDataAccessException(1));
+		} else {
+			pending.result.complete(res.get(0));
+		}
+	}
+
+	/**
+	 * The key used as a parameter and the one mapped from the result set may have different numeric types.
+	 */
+	private static Object normalize(Object key) {
+		if ((key instanceof Double || key instanceof Float) && !Double.isFinite(((Number) key).doubleValue())) {
+			return ((Number) key).doubleValue();
+		}
+		if (key instanceof Number) {
+			return new BigDecimal(key.toString()).stripTrailingZeros();
+		}
+		return key;
+	}
+
+	private static class Pending {
+		private final Object key;
+		private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+		Pending(Object key) {
+			this.key = key;
+		}
+	}
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Keyset pagination of a select returning {@link Page}: the method must have a {@link PageRequest} parameter and the
+ * column must be unique and part of the select list.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Keyset {
+
+	/**
+	 * The column used for ordering the rows.
+	 *
+	 * @return
+	 */
+	String column();
+
+	/**
+	 * The property (getter or field) of the mapped object that contains the value of the column. If empty, the mapped
+	 * object itself is the key.
+	 *
+	 * @return
+	 */
+	String property() default "";
+
+	boolean descending() default false;
+
+	/**
+	 * If true, the next page is fetched in background while the current one is processed. It's ignored inside a
+	 * transaction.
+	 *
+	 * @return
+	 */
+	boolean prefetch() default false;
+}
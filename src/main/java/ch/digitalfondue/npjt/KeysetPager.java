@@ -0,0 +1,172 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import ch.digitalfondue.npjt.mapper.ColumnMapperFactory;
+import ch.digitalfondue.npjt.mapper.ParameterConverter;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/**
+ * Execute the methods annotated with {@link Keyset}.
+ */
+class KeysetPager {
+
+	private static final ExecutorService PREFETCH_EXECUTOR = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+		Thread t = new Thread(r, "npjt-page-prefetch");
+		t.setDaemon(true);
+		return t;
+	});
+
+	private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+	private static final Pattern ORDER_BY = Pattern.compile("\\bORDER\\s+BY\\b", Pattern.CASE_INSENSITIVE);
+
+	private static final Set<String> LIMIT_DBS = new HashSet<>(Arrays.asList("MYSQL", "MARIADB", "PGSQL", "HSQLDB", "H2", "SQLITE"));
+
+	static final String LAST_KEY_PARAMETER = "npjtLastKey";
+	static final String LIMIT_PARAMETER = "npjtLimit";
+
+	private final Method method;
+	private final Keyset keyset;
+	private final String firstPageQuery;
+	private final String nextPageQuery;
+	private final Class<?> rowMapperClass;
+	private final Class<Object> mappedClass;
+	private final int pageRequestIndex;
+	private final Annotation[] keyAnnotations;
+	private final Map<Class<?>, ParameterConverter> keyConverters = new ConcurrentHashMap<>();
+	private final SortedSet<ColumnMapperFactory> columnMapperFactories;
+	private final SortedSet<ParameterConverter> parameterConverters;
+
+	@SuppressWarnings("unchecked")
+	KeysetPager(Method method, QueryFactory.QueryTypeAndQuery queryTypeAndQuery, String activeDB,
+				SortedSet<ColumnMapperFactory> columnMapperFactories, SortedSet<ParameterConverter> parameterConverters) {
+		this.method = method;
+		this.keyset = method.getAnnotation(Keyset.class);
+		this.rowMapperClass = queryTypeAndQuery.rowMapperClass;
+		this.columnMapperFactories = columnMapperFactories;
+		this.parameterConverters = parameterConverters;
+
+		Type returnType = method.getGenericReturnType();
+		if (method.getReturnType() != Page.class || !(returnType instanceof ParameterizedType)) {
+			throw new IllegalArgumentException(String.format("method %s annotated with @Keyset must return Page<T>", method.getName()));
+		}
+		this.mappedClass = (Class<Object>) ((ParameterizedType) returnType).getActualTypeArguments()[0];
+		this.pageRequestIndex = Arrays.asList(method.getParameterTypes()).indexOf(PageRequest.class);
+		if (pageRequestIndex < 0) {
+			throw new IllegalArgumentException(String.format("method %s annotated with @Keyset must have a PageRequest parameter", method.getName()));
+		}
+		this.keyAnnotations = method.getParameterAnnotations()[pageRequestIndex];
+
+		if (hasOrderBy(queryTypeAndQuery.query)) {
+			throw new IllegalArgumentException(String.format("the query of method %s annotated with @Keyset must not have an ORDER BY clause, as the order is defined by the keyset column", method.getName()));
+		}
+		String query = "SELECT * FROM (" + queryTypeAndQuery.query + ") npjt_page";
+		String orderBy = " ORDER BY " + keyset.column() + (keyset.descending() ? " DESC " : " ASC ") + limitClause(activeDB);
+		this.firstPageQuery = query + orderBy;
+		this.nextPageQuery = query + " WHERE " + keyset.column() + (keyset.descending() ? " < :" : " > :") + LAST_KEY_PARAMETER + orderBy;
+	}
+
+	/**
+	 * True if the query has an ORDER BY outside of the parentheses: it cannot be used in a derived table.
+	 */
+	static boolean hasOrderBy(String query) {
+		String q = STRING_LITERAL.matcher(query).replaceAll("''");
+		StringBuilder topLevel = new StringBuilder(q.length());
+		int depth = 0;
+		for (int i = 0; i < q.length(); i++) {
+			char c = q.charAt(i);
+			if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				depth--;
+			} else if (depth == 0) {
+				topLevel.append(c);
+			}
+		}
+		return ORDER_BY.matcher(topLevel).find();
+	}
+
+	static String limitClause(String activeDB) {
+		if (activeDB != null && LIMIT_DBS.contains(activeDB.toUpperCase(Locale.ENGLISH))) {
+			return "LIMIT :" + LIMIT_PARAMETER;
+		} else if ("MSSQL".equalsIgnoreCase(activeDB)) {
+			return "OFFSET 0 ROWS FETCH NEXT :" + LIMIT_PARAMETER + " ROWS ONLY";
+		} else {
+			return "FETCH FIRST :" + LIMIT_PARAMETER + " ROWS ONLY";
+		}
+	}
+
+	Page<Object> execute(NamedParameterJdbcTemplate jdbc, Object[] args) {
+		return fetch(jdbc, args).prefetchNext();
+	}
+
+	private Page<Object> fetch(NamedParameterJdbcTemplate jdbc, Object[] args) {
+		PageRequest request = (PageRequest) args[pageRequestIndex];
+		if (request == null) {
+			throw new IllegalArgumentException(String.format("the PageRequest parameter of method %s must not be null", method.getName()));
+		}
+
+		MapSqlParameterSource parameters = new MapSqlParameterSource();
+		SqlParameterSource source = QueryType.extractParameters(method, args, parameterConverters, jdbc);
+		for (String name : Objects.requireNonNull(source.getParameterNames())) {
+			parameters.addValue(name, source.getValue(name), source.getSqlType(name), source.getTypeName(name));
+		}
+		// fetch one more row for knowing if there is a next page
+		parameters.addValue(LIMIT_PARAMETER, request.getSize() + 1);
+		bindLastKey(request.getLastKey(), jdbc, parameters);
+
+		String query = request.getLastKey() == null ? firstPageQuery : nextPageQuery;
+		List<Object> rows = QueryType.queryForList(query, rowMapperClass, mappedClass, jdbc, method, parameters, columnMapperFactories);
+
+		boolean hasNext = rows.size() > request.getSize();
+		List<Object> content = hasNext ? new ArrayList<>(rows.subList(0, request.getSize())) : rows;
+		Object lastKey = content.isEmpty() ? request.getLastKey() : key(content.get(content.size() - 1));
+
+		Object[] nextArgs = args.clone();
+		nextArgs[pageRequestIndex] = lastKey == null ? request : PageRequest.after(lastKey, request.getSize());
+		return new Page<>(content, lastKey, hasNext, () -> fetch(jdbc, nextArgs), keyset.prefetch() ? PREFETCH_EXECUTOR : null);
+	}
+
+	/**
+	 * The last key is bound with the parameter converters, as the other parameters (the annotations of the PageRequest
+	 * parameter are used).
+	 */
+	private void bindLastKey(Object lastKey, NamedParameterJdbcTemplate jdbc, MapSqlParameterSource parameters) {
+		if (lastKey == null) {
+			parameters.addValue(LAST_KEY_PARAMETER, null);
+			return;
+		}
+		Class<?> type = lastKey.getClass();
+		ParameterConverter converter = keyConverters.computeIfAbsent(type, c -> ParameterBinding.resolve(LAST_KEY_PARAMETER, c, keyAnnotations, parameterConverters).getConverter());
+		ParameterBinding.process(converter, jdbc, LAST_KEY_PARAMETER, lastKey, type, keyAnnotations, parameters);
+	}
+
+	private Object key(Object row) {
+		return keyset.property().isEmpty() ? row : PropertyExtractors.extract(row, keyset.property());
+	}
+}
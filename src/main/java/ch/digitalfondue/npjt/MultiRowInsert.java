@@ -0,0 +1,44 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Rewrite an insert executed as a JDBC batch as a multi row insert of {@link #chunkSize()} rows.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface MultiRowInsert {
+
+	/**
+	 * Number of rows of each insert.
+	 *
+	 * @return
+	 */
+	int chunkSize() default 50;
+
+	/**
+	 * The databases, as specified in the activeDB of the {@link QueryFactory}, where the rewrite is applied.
+	 * If empty, it's applied for all the databases.
+	 *
+	 * @return
+	 */
+	String[] db() default {};
+}
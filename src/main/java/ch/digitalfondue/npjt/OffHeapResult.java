@@ -0,0 +1,401 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import org.springframework.util.ClassUtils;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The result of a select stored column by column in direct (off heap) buffers, following the constructor annotated
+ * with {@link ConstructorAnnotationRowMapper.Column} of T.
+ *
+ * @param <T>
+ */
+public final class OffHeapResult<T> implements AutoCloseable {
+
+	private static final Map<Class<?>, Layout> LAYOUTS = new ConcurrentHashMap<>();
+	private static final int INITIAL_ROWS = 1024;
+
+	private final Layout layout;
+	private final ByteBuffer[] buffers;
+	private final BitSet[] nulls;
+	private final List<List<String>> dictionaries;
+	private final int size;
+	private boolean closed;
+
+	private OffHeapResult(Layout layout, ByteBuffer[] buffers, BitSet[] nulls, List<List<String>> dictionaries, int size) {
+		this.layout = layout;
+		this.buffers = buffers;
+		this.nulls = nulls;
+		this.dictionaries = dictionaries;
+		this.size = size;
+	}
+
+	static <T> OffHeapResult<T> read(ResultSet rs, Class<T> clazz) throws SQLException {
+		Layout layout = LAYOUTS.computeIfAbsent(clazz, Layout::new);
+		int columnCount = layout.columns.length;
+		ByteBuffer[] buffers = new ByteBuffer[columnCount];
+		BitSet[] nulls = new BitSet[columnCount];
+		List<List<String>> dictionaries = new ArrayList<>(columnCount);
+		List<Map<String, Integer>> codes = new ArrayList<>(columnCount);
+		int[] indexes = new int[columnCount];
+		for (int i = 0; i < columnCount; i++) {
+			buffers[i] = allocate(INITIAL_ROWS * layout.kinds[i].width);
+			nulls[i] = new BitSet();
+			dictionaries.add(layout.kinds[i] == Kind.STRING ? new ArrayList<>() : null);
+			codes.add(layout.kinds[i] == Kind.STRING ? new HashMap<>() : null);
+			indexes[i] = rs.findColumn(layout.columns[i]);
+		}
+
+		int size = 0;
+		while (rs.next()) {
+			for (int i = 0; i < columnCount; i++) {
+				Kind kind = layout.kinds[i];
+				ByteBuffer buffer = buffers[i];
+				if (buffer.remaining() < kind.width) {
+					buffer = grow(buffer);
+					buffers[i] = buffer;
+				}
+				int idx = indexes[i];
+				switch (kind) {
+				case LONG:
+					buffer.putLong(rs.getLong(idx));
+					break;
+				case INT:
+					buffer.putInt(rs.getInt(idx));
+					break;
+				case SHORT:
+					buffer.putShort(rs.getShort(idx));
+					break;
+				case BYTE:
+					buffer.put(rs.getByte(idx));
+					break;
+				case DOUBLE:
+					buffer.putDouble(rs.getDouble(idx));
+					break;
+				case FLOAT:
+					buffer.putFloat(rs.getFloat(idx));
+					break;
+				case BOOLEAN:
+					buffer.put((byte) (rs.getBoolean(idx) ? 1 : 0));
+					break;
+				case CHAR: {
+					String s = rs.getString(idx);
+					buffer.putChar(s == null || s.isEmpty() ? '\0' : s.charAt(0));
+					break;
+				}
+				case STRING: {
+					String s = rs.getString(idx);
+					List<String> dictionary = dictionaries.get(i);
+					buffer.putInt(s == null ? -1 : codes.get(i).computeIfAbsent(s, k -> {
+						dictionary.add(k);
+						return dictionary.size() - 1;
+					}));
+					break;
+				}
+				case ENUM: {
+					String s = rs.getString(idx);
+					buffer.putInt(s == null ? -1 : layout.enumOrdinal(i, s));
+					break;
+				}
+				default:
+					throw new IllegalStateException("unknown kind " + kind);
+				}
+				if (rs.wasNull()) {
+					nulls[i].set(size);
+				}
+			}
+			size++;
+		}
+		return new OffHeapResult<>(layout, buffers, nulls, dictionaries, size);
+	}
+
+	private static ByteBuffer allocate(int capacity) {
+		return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+	}
+
+	private static ByteBuffer grow(ByteBuffer buffer) {
+		ByteBuffer bigger = allocate(buffer.capacity() * 2);
+		buffer.flip();
+		bigger.put(buffer);
+		return bigger;
+	}
+
+	/**
+	 * @return the number of rows
+	 */
+	public int size() {
+		return size;
+	}
+
+	public List<String> getColumnNames() {
+		return Collections.unmodifiableList(Arrays.asList(layout.columns));
+	}
+
+	public boolean isNull(String column, int row) {
+		return nulls[checkedIndex(column, row)].get(row);
+	}
+
+	/**
+	 * Read a value of an integer column (long, int, short or byte).
+	 */
+	public long getLong(String column, int row) {
+		int i = checkedIndex(column, row);
+		switch (layout.kinds[i]) {
+		case LONG:
+			return buffers[i].getLong(row * 8);
+		case INT:
+			return buffers[i].getInt(row * 4);
+		case SHORT:
+			return buffers[i].getShort(row * 2);
+		case BYTE:
+			return buffers[i].get(row);
+		default:
+			throw wrongType(column, "an integer");
+		}
+	}
+
+	public int getInt(String column, int row) {
+		return Math.toIntExact(getLong(column, row));
+	}
+
+	/**
+	 * Read a value of a floating point column (double or float).
+	 */
+	public double getDouble(String column, int row) {
+		int i = checkedIndex(column, row);
+		switch (layout.kinds[i]) {
+		case DOUBLE:
+			return buffers[i].getDouble(row * 8);
+		case FLOAT:
+			return buffers[i].getFloat(row * 4);
+		default:
+			throw wrongType(column, "a floating point");
+		}
+	}
+
+	public boolean getBoolean(String column, int row) {
+		int i = checkedIndex(column, row);
+		if (layout.kinds[i] != Kind.BOOLEAN) {
+			throw wrongType(column, "a boolean");
+		}
+		return buffers[i].get(row) != 0;
+	}
+
+	/**
+	 * Read a value of a String, char or enum column (the enum name is returned).
+	 */
+	public String getString(String column, int row) {
+		int i = checkedIndex(column, row);
+		switch (layout.kinds[i]) {
+		case STRING: {
+			int code = buffers[i].getInt(row * 4);
+			return code < 0 ? null : dictionaries.get(i).get(code);
+		}
+		case ENUM: {
+			int ordinal = buffers[i].getInt(row * 4);
+			return ordinal < 0 ? null : ((Enum<?>) layout.types[i].getEnumConstants()[ordinal]).name();
+		}
+		case CHAR:
+			return isNull(column, row) ? null : String.valueOf(buffers[i].getChar(row * 2));
+		default:
+			throw wrongType(column, "a String, char or enum");
+		}
+	}
+
+	/**
+	 * Read the distinct values of a String column.
+	 */
+	public List<String> getDictionary(String column) {
+		int i = layout.index(column);
+		if (layout.kinds[i] != Kind.STRING) {
+			throw wrongType(column, "a String");
+		}
+		return Collections.unmodifiableList(dictionaries.get(i));
+	}
+
+	/**
+	 * Build the object of the given row.
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(int row) {
+		Object[] values = new Object[layout.columns.length];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = value(i, row);
+		}
+		try {
+			return (T) layout.constructor.newInstance(values);
+		} catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private Object value(int i, int row) {
+		Class<?> type = layout.types[i];
+		String column = layout.columns[i];
+		if (!type.isPrimitive() && nulls[i].get(row)) {
+			return null;
+		}
+		switch (layout.kinds[i]) {
+		case LONG:
+			return getLong(column, row);
+		case INT:
+			return (int) getLong(column, row);
+		case SHORT:
+			return (short) getLong(column, row);
+		case BYTE:
+			return (byte) getLong(column, row);
+		case DOUBLE:
+			return getDouble(column, row);
+		case FLOAT:
+			return (float) getDouble(column, row);
+		case BOOLEAN:
+			return getBoolean(column, row);
+		case CHAR:
+			return buffers[i].getChar(row * 2);
+		case ENUM: {
+			int ordinal = buffers[i].getInt(row * 4);
+			return ordinal < 0 ? null : type.getEnumConstants()[ordinal];
+		}
+		default:
+			return getString(column, row);
+		}
+	}
+
+	/**
+	 * Release the references to the buffers: the memory is freed when they are garbage collected.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		Arrays.fill(buffers, null);
+	}
+
+	private int checkedIndex(String column, int row) {
+		if (closed) {
+			throw new IllegalStateException("the result has been closed");
+		}
+		if (row < 0 || row >= size) {
+			throw new IndexOutOfBoundsException("row " + row + ", size " + size);
+		}
+		return layout.index(column);
+	}
+
+	private IllegalArgumentException wrongType(String column, String expected) {
+		return new IllegalArgumentException("The column " + column + " is not " + expected + " column");
+	}
+
+	private enum Kind {
+		LONG(8), INT(4), SHORT(2), BYTE(1), DOUBLE(8), FLOAT(4), BOOLEAN(1), CHAR(2), STRING(4), ENUM(4);
+
+		private final int width;
+
+		Kind(int width) {
+			this.width = width;
+		}
+	}
+
+	/**
+	 * The columns of a class, resolved once from the constructor annotated with @Column.
+	 */
+	private static class Layout {
+		private final Constructor<?> constructor;
+		private final String[] columns;
+		private final Class<?>[] types;
+		private final Kind[] kinds;
+		private final Map<String, Integer> indexes = new HashMap<>();
+		private final Map<Integer, Map<String, Integer>> enumOrdinals = new HashMap<>();
+
+		Layout(Class<?> clazz) {
+			if (!ConstructorAnnotationRowMapper.hasConstructorInTheCorrectForm(clazz)) {
+				throw new IllegalArgumentException("The class " + clazz.getName() + " must have exactly one public constructor with all the parameters annotated with @Column");
+			}
+			this.constructor = clazz.getConstructors()[0];
+			Class<?>[] parameterTypes = constructor.getParameterTypes();
+			Annotation[][] parameterAnnotations = constructor.getParameterAnnotations();
+			this.columns = new String[parameterTypes.length];
+			this.types = parameterTypes;
+			this.kinds = new Kind[parameterTypes.length];
+			for (int i = 0; i < parameterTypes.length; i++) {
+				for (Annotation a : parameterAnnotations[i]) {
+					if (a instanceof ConstructorAnnotationRowMapper.Column) {
+						columns[i] = ((ConstructorAnnotationRowMapper.Column) a).value();
+					}
+				}
+				kinds[i] = kind(clazz, columns[i], parameterTypes[i]);
+				indexes.put(columns[i].toUpperCase(Locale.ENGLISH), i);
+				if (kinds[i] == Kind.ENUM) {
+					Map<String, Integer> ordinals = new HashMap<>();
+					for (Object e : parameterTypes[i].getEnumConstants()) {
+						ordinals.put(((Enum<?>) e).name(), ((Enum<?>) e).ordinal());
+					}
+					enumOrdinals.put(i, ordinals);
+				}
+			}
+		}
+
+		private static Kind kind(Class<?> clazz, String column, Class<?> type) {
+			Class<?> t = ClassUtils.resolvePrimitiveIfNecessary(type);
+			if (t == Long.class) {
+				return Kind.LONG;
+			} else if (t == Integer.class) {
+				return Kind.INT;
+			} else if (t == Short.class) {
+				return Kind.SHORT;
+			} else if (t == Byte.class) {
+				return Kind.BYTE;
+			} else if (t == Double.class) {
+				return Kind.DOUBLE;
+			} else if (t == Float.class) {
+				return Kind.FLOAT;
+			} else if (t == Boolean.class) {
+				return Kind.BOOLEAN;
+			} else if (t == Character.class) {
+				return Kind.CHAR;
+			} else if (t == String.class) {
+				return Kind.STRING;
+			} else if (t.isEnum()) {
+				return Kind.ENUM;
+			}
+			throw new IllegalArgumentException("The column " + column + " of class " + clazz.getName() + " has type " + type.getName() + ", that cannot be stored off heap");
+		}
+
+		int enumOrdinal(int column, String name) {
+			Integer ordinal = enumOrdinals.get(column).get(name);
+			if (ordinal == null) {
+				throw new IllegalArgumentException("The value " + name + " of column " + columns[column] + " is not a constant of " + types[column].getName());
+			}
+			return ordinal;
+		}
+
+		int index(String column) {
+			Integer idx = indexes.get(column.toUpperCase(Locale.ENGLISH));
+			if (idx == null) {
+				throw new IllegalArgumentException("The column " + column + " is not present, available columns: " + Arrays.toString(columns));
+			}
+			return idx;
+		}
+	}
+}
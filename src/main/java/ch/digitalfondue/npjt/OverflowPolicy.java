@@ -0,0 +1,34 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+/**
+ * Policy applied when the queue of a method annotated with {@link AsyncWrite} is full.
+ */
+public enum OverflowPolicy {
+	/**
+	 * The caller wait until there is space in the queue.
+	 */
+	BLOCK,
+	/**
+	 * The write is discarded.
+	 */
+	DROP,
+	/**
+	 * The write is executed immediately by the caller.
+	 */
+	CALLER_RUNS
+}
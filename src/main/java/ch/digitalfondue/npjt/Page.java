@@ -0,0 +1,119 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * A page returned by a method annotated with {@link Keyset}.
+ *
+ * @param <T>
+ */
+public final class Page<T> {
+
+	private final List<T> content;
+	private final Object lastKey;
+	private final boolean hasNext;
+	private final Supplier<Page<T>> nextPage;
+	// if not null, the next page is fetched in background with this executor
+	private final Executor prefetchExecutor;
+	private CompletableFuture<Page<T>> prefetched;
+
+	Page(List<T> content, Object lastKey, boolean hasNext, Supplier<Page<T>> nextPage, Executor prefetchExecutor) {
+		this.content = Collections.unmodifiableList(content);
+		this.lastKey = lastKey;
+		this.hasNext = hasNext;
+		this.nextPage = nextPage;
+		this.prefetchExecutor = prefetchExecutor;
+	}
+
+	/**
+	 * Start fetching the next page in background, if enabled. Called when the page is handed to the caller, thus only
+	 * one page ahead is fetched.
+	 */
+	Page<T> prefetchNext() {
+		if (hasNext && prefetchExecutor != null && !TransactionSynchronizationManager.isActualTransactionActive()) {
+			prefetched = CompletableFuture.supplyAsync(nextPage, prefetchExecutor);
+		}
+		return this;
+	}
+
+	public List<T> getContent() {
+		return content;
+	}
+
+	/**
+	 * @return the key of the last element of the page, to be used in {@link PageRequest#after(Object, int)}
+	 */
+	public Object getLastKey() {
+		return lastKey;
+	}
+
+	public boolean hasNext() {
+		return hasNext;
+	}
+
+	/**
+	 * Fetch the next page, or return it if it has been prefetched.
+	 *
+	 * @return
+	 */
+	public Page<T> next() {
+		if (!hasNext) {
+			throw new NoSuchElementException();
+		}
+		Page<T> next = prefetched != null ? SingleFlightGroup.await(prefetched) : nextPage.get();
+		return next.prefetchNext();
+	}
+
+	/**
+	 * Iterate over the elements of this page and of all the following ones, fetching the pages when needed.
+	 *
+	 * @return
+	 */
+	public Iterator<T> iterateAll() {
+		return new Iterator<T>() {
+
+			private Page<T> page = Page.this;
+			private Iterator<T> current = content.iterator();
+
+			@Override
+			public boolean hasNext() {
+				while (!current.hasNext() && page.hasNext) {
+					page = page.next();
+					current = page.content.iterator();
+				}
+				return current.hasNext();
+			}
+
+			@Override
+			public T next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return current.next();
+			}
+		};
+	}
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import java.util.Objects;
+
+/**
+ * The page to fetch with a method annotated with {@link Keyset}: the first one, or the one after a given key.
+ */
+public final class PageRequest {
+
+	private final Object lastKey;
+	private final int size;
+
+	private PageRequest(Object lastKey, int size) {
+		if (size <= 0) {
+			throw new IllegalArgumentException("the page size must be positive");
+		}
+		this.lastKey = lastKey;
+		this.size = size;
+	}
+
+	public static PageRequest first(int size) {
+		return new PageRequest(null, size);
+	}
+
+	public static PageRequest after(Object lastKey, int size) {
+		if (lastKey == null) {
+			throw new IllegalArgumentException("the last key must not be null");
+		}
+		return new PageRequest(lastKey, size);
+	}
+
+	/**
+	 * @return the key of the last element of the previous page, null for the first page
+	 */
+	public Object getLastKey() {
+		return lastKey;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof PageRequest)) {
+			return false;
+		}
+		PageRequest other = (PageRequest) o;
+		return size == other.size && Objects.equals(lastKey, other.lastKey);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(lastKey, size);
+	}
+}
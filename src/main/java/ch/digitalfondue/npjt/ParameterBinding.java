@@ -0,0 +1,74 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import ch.digitalfondue.npjt.mapper.ParameterConverter;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.lang.annotation.Annotation;
+import java.util.SortedSet;
+
+/**
+ * A named parameter with its {@link ParameterConverter} resolved once.
+ */
+class ParameterBinding {
+
+	private final String name;
+	private final Class<?> type;
+	private final Annotation[] annotations;
+	private final ParameterConverter converter;
+
+	private ParameterBinding(String name, Class<?> type, Annotation[] annotations, ParameterConverter converter) {
+		this.name = name;
+		this.type = type;
+		this.annotations = annotations;
+		this.converter = converter;
+	}
+
+	static ParameterBinding resolve(String name, Class<?> type, Annotation[] annotations, SortedSet<ParameterConverter> parameterConverters) {
+		ParameterConverter converter = findConverter(type, annotations, parameterConverters);
+		if (converter == null) {
+			throw new IllegalStateException("Was not able to find a ParameterConverter able to process parameter " + name + " with class " + type);
+		}
+		return new ParameterBinding(name, type, annotations, converter);
+	}
+
+	static ParameterConverter findConverter(Class<?> type, Annotation[] annotations, SortedSet<ParameterConverter> parameterConverters) {
+		for (ParameterConverter parameterConverter : parameterConverters) {
+			if (parameterConverter.accept(type, annotations)) {
+				return parameterConverter;
+			}
+		}
+		return null;
+	}
+
+	static void process(ParameterConverter converter, NamedParameterJdbcTemplate jdbc, String name, Object arg, Class<?> type, Annotation[] annotations, MapSqlParameterSource ps) {
+		if (converter instanceof ParameterConverter.AdvancedParameterConverter) {
+			((ParameterConverter.AdvancedParameterConverter) converter).processParameter(new ParameterConverter.ProcessParameterContext(jdbc, name, arg, type, annotations, ps));
+		} else {
+			converter.processParameter(name, arg, type, ps);
+		}
+	}
+
+	ParameterConverter getConverter() {
+		return converter;
+	}
+
+	void bind(Object arg, NamedParameterJdbcTemplate jdbc, MapSqlParameterSource ps) {
+		process(converter, jdbc, name, arg, type, annotations, ps);
+	}
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.lang.reflect.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Read the first column of a select in a primitive array (long[], int[], short[], double[], float[] or boolean[])
+ * without boxing the values. Null values are read as 0 or false.
+ */
+class PrimitiveArrays {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private static final Map<Class<?>, ElementReader> READERS = new HashMap<>();
+
+	static {
+		READERS.put(long.class, (rs, array, index) -> ((long[]) array)[index] = rs.getLong(1));
+		READERS.put(int.class, (rs, array, index) -> ((int[]) array)[index] = rs.getInt(1));
+		READERS.put(short.class, (rs, array, index) -> ((short[]) array)[index] = rs.getShort(1));
+		READERS.put(double.class, (rs, array, index) -> ((double[]) array)[index] = rs.getDouble(1));
+		READERS.put(float.class, (rs, array, index) -> ((float[]) array)[index] = rs.getFloat(1));
+		READERS.put(boolean.class, (rs, array, index) -> ((boolean[]) array)[index] = rs.getBoolean(1));
+	}
+
+	private PrimitiveArrays() {
+	}
+
+	static boolean isPrimitiveArray(Class<?> type) {
+		// byte[] is mapped as a single binary value
+		return type.isArray() && type.getComponentType().isPrimitive() && type.getComponentType() != byte.class && type.getComponentType() != char.class;
+	}
+
+	static Object query(NamedParameterJdbcTemplate jdbc, String template, SqlParameterSource parameters, Class<?> componentType) {
+		ElementReader reader = READERS.get(componentType);
+		if (reader == null) {
+			throw new IllegalArgumentException("unsupported primitive array of " + componentType);
+		}
+		Object[] res = { Array.newInstance(componentType, INITIAL_CAPACITY) };
+		int[] size = new int[1];
+		jdbc.query(template, parameters, (RowCallbackHandler) rs -> {
+			res[0] = ensureCapacity(res[0], size[0]);
+			reader.read(rs, res[0], size[0]++);
+		});
+		return copyOf(res[0], size[0]);
+	}
+
+	/**
+	 * @param array an array of any component type
+	 * @return the array, or a larger copy if it cannot store the element at the given index
+	 */
+	@SuppressWarnings("unchecked")
+	static <A> A ensureCapacity(A array, int size) {
+		int length = Array.getLength(array);
+		return size < length ? array : (A) resize(array, length, newCapacity(length));
+	}
+
+	/**
+	 * @return a copy of the first size elements of the array
+	 */
+	@SuppressWarnings("unchecked")
+	static <A> A copyOf(A array, int size) {
+		return (A) resize(array, Math.min(size, Array.getLength(array)), size);
+	}
+
+	private static Object resize(Object array, int length, int newLength) {
+		Object copy = Array.newInstance(array.getClass().getComponentType(), newLength);
+		System.arraycopy(array, 0, copy, 0, length);
+		return copy;
+	}
+
+	private static int newCapacity(int length) {
+		return Math.max(INITIAL_CAPACITY, length + (length >> 1));
+	}
+
+	private interface ElementReader {
+		void read(ResultSet rs, Object array, int index) throws SQLException;
+	}
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Read a named property (getter or field) of the mapped objects. The accessors are resolved once per class.
+ */
+class PropertyExtractors {
+
+	private static final Map<Class<?>, Map<String, Function<Object, Object>>> EXTRACTORS = new ConcurrentHashMap<>();
+
+	private PropertyExtractors() {
+	}
+
+	static Object extract(Object o, String property) {
+		return EXTRACTORS.computeIfAbsent(o.getClass(), c -> new ConcurrentHashMap<>())
+				.computeIfAbsent(property, p -> extractor(o.getClass(), p))
+				.apply(o);
+	}
+
+	private static Function<Object, Object> extractor(Class<?> clazz, String property) {
+		String capitalized = StringUtils.capitalize(property);
+		for (String name : Arrays.asList("get" + capitalized, "is" + capitalized, property)) {
+			Method getter = ReflectionUtils.findMethod(clazz, name);
+			if (getter != null && getter.getReturnType() != void.class) {
+				ReflectionUtils.makeAccessible(getter);
+				return o -> ReflectionUtils.invokeMethod(getter, o);
+			}
+		}
+		Field field = ReflectionUtils.findField(clazz, property);
+		if (field == null) {
+			throw new IllegalArgumentException("Was not able to find the property " + property + " in class " + clazz.getName());
+		}
+		ReflectionUtils.makeAccessible(field);
+		return o -> ReflectionUtils.getField(field, o);
+	}
+}
@@ -16,9 +16,15 @@
 package ch.digitalfondue.npjt;
 
 import ch.digitalfondue.npjt.mapper.*;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.FactoryBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.ReflectionUtils;
 
 import javax.sql.DataSource;
@@ -26,19 +32,35 @@ import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 
-public class QueryFactory<T> implements FactoryBean<T> {
+public class QueryFactory<T> implements FactoryBean<T>, DisposableBean {
 
     private final Class<T> targetInterface;
     private final String activeDB;
 
     private DataSource dataSource;
     private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private PlatformTransactionManager transactionManager;
     private List<ColumnMapperFactory> additionalColumnMapperFactories;
     private List<ParameterConverter> additionalParameterConverters;
+    private List<DataSource> replicaDataSources;
+    private ReplicaBalancing replicaBalancing = ReplicaBalancing.ROUND_ROBIN;
+    private List<DataSource> shardDataSources;
+    private ShardResolver shardResolver = ShardResolver.HASH;
+    private Executor shardExecutor;
+    private Executor referenceRefreshExecutor;
+    private String invalidationLogTable;
+    private long invalidationPollMillis = 1000;
+
+    private final List<AsyncWriteQueues> createdAsyncWriteQueues = new CopyOnWriteArrayList<>();
+    private final Map<Method, QueryTypeAndQuery> queries = new ConcurrentHashMap<>();
 
     public QueryFactory(Class<T> targetInterface, String activeDB) {
         this.targetInterface = targetInterface;
@@ -52,7 +74,11 @@ public class QueryFactory<T> implements FactoryBean<T> {
                 new LocalDateMapper.Factory(),
                 new LocalDateTimeMapper.Factory(),
                 new InstantMapper.Factory(),
-                new ZonedDateTimeMapper.Factory())
+                new ZonedDateTimeMapper.Factory(),
+                new LobMapper.Factory(),
+                new DeduplicateStringMapper.Factory(),
+                new UUIDMapper.Factory(),
+                new ScaledDecimalMapper.Factory())
         );
     }
 
@@ -63,7 +89,10 @@ public class QueryFactory<T> implements FactoryBean<T> {
                 new LocalDateMapper.Converter(),
                 new LocalDateTimeMapper.Converter(),
                 new InstantMapper.Converter(),
-                new ZonedDateTimeMapper.Converter())
+                new ZonedDateTimeMapper.Converter(),
+                new LobMapper.Converter(),
+                new UUIDMapper.Converter(),
+                new ScaledDecimalMapper.Converter())
         );
     }
 
@@ -91,6 +120,16 @@ public class QueryFactory<T> implements FactoryBean<T> {
         return targetInterface;
     }
 
+    /**
+     * Execute the pending writes of the methods annotated with {@link AsyncWrite}.
+     */
+    @Override
+    public void destroy() {
+        for (AsyncWriteQueues asyncWriteQueues : createdAsyncWriteQueues) {
+            asyncWriteQueues.shutdown();
+        }
+    }
+
 
     //
     @Autowired
@@ -98,6 +137,12 @@ public class QueryFactory<T> implements FactoryBean<T> {
         this.dataSource = dataSource;
     }
 
+    /**
+     * The repository uses a copy of the given template for tracking the statements of a {@link QueryGroup}. If the
+     * template is a subclass of JdbcTemplate, it is used as is and the QueryGroup cannot cancel its statements.
+     *
+     * @param namedParameterJdbcTemplate
+     */
     @Autowired(required = false)
     public void setJdbc(NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
         this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
@@ -112,6 +157,81 @@ public class QueryFactory<T> implements FactoryBean<T> {
     public void setAdditionalParameterConverters(List<ParameterConverter> additionalParameterConverters) {
         this.additionalParameterConverters = additionalParameterConverters;
     }
+
+    /**
+     * Transaction manager used by {@link GroupCommit} and {@link ChunkedBatch}, and to suspend the caller's transaction
+     * while loading a {@link ReferenceTable} snapshot, by default a {@link DataSourceTransactionManager} on the data source.
+     *
+     * @param transactionManager
+     */
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionManager = transactionManager;
+    }
+
+    /**
+     * Read only queries executed outside of a read-write transaction will be routed to the given replicas.
+     *
+     * @param replicaDataSources
+     */
+    public void setReplicaDataSources(List<DataSource> replicaDataSources) {
+        this.replicaDataSources = replicaDataSources;
+    }
+
+    public void setReplicaBalancing(ReplicaBalancing replicaBalancing) {
+        this.replicaBalancing = replicaBalancing;
+    }
+
+    /**
+     * Methods with a parameter annotated with {@link ShardKey} or annotated with {@link ScatterGather} will be
+     * executed on the given shards.
+     *
+     * @param shardDataSources
+     */
+    public void setShardDataSources(List<DataSource> shardDataSources) {
+        this.shardDataSources = shardDataSources;
+    }
+
+    public void setShardResolver(ShardResolver shardResolver) {
+        this.shardResolver = shardResolver;
+    }
+
+    /**
+     * Executor used for running the {@link ScatterGather} queries in parallel.
+     *
+     * @param shardExecutor
+     */
+    public void setShardExecutor(Executor shardExecutor) {
+        this.shardExecutor = shardExecutor;
+    }
+
+    /**
+     * Executor used for refreshing the snapshots of the {@link ReferenceTable} methods in background.
+     *
+     * @param referenceRefreshExecutor
+     */
+    public void setReferenceRefreshExecutor(Executor referenceRefreshExecutor) {
+        this.referenceRefreshExecutor = referenceRefreshExecutor;
+    }
+
+    /**
+     * Table used for invalidating the cache regions across the nodes, see {@link Invalidates}. It must have a SEQ column
+     * with consecutive increasing values (e.g. an identity primary key) and a REGION column. The log is not pruned: the
+     * rows older than the poll interval plus one minute can be deleted periodically.
+     *
+     * @param invalidationLogTable
+     */
+    public void setInvalidationLogTable(String invalidationLogTable) {
+        this.invalidationLogTable = invalidationLogTable;
+    }
+
+    /**
+     * Minimal delay between two polls of the invalidation log, 1000 by default.
+     *
+     * @param invalidationPollMillis
+     */
+    public void setInvalidationPollMillis(long invalidationPollMillis) {
+        this.invalidationPollMillis = invalidationPollMillis;
+    }
     //
 
     static class QueryTypeAndQuery {
@@ -128,6 +248,16 @@ public class QueryFactory<T> implements FactoryBean<T> {
 
 
     private QueryTypeAndQuery extractQueryAnnotation(Class<?> clazz, Method method) {
+        return queries.computeIfAbsent(method, m -> {
+            QueryTypeAndQuery qs = findQueryAnnotation(m);
+            if (qs.type == QueryType.TEMPLATE) {
+                return qs;
+            }
+            return new QueryTypeAndQuery(qs.type, ColumnsPlaceholder.expand(qs.query, clazz, m), qs.rowMapperClass);
+        });
+    }
+
+    private QueryTypeAndQuery findQueryAnnotation(Method method) {
 
         Query q = method.getAnnotation(Query.class);
         QueriesOverride qs = method.getAnnotation(QueriesOverride.class);
@@ -146,6 +276,10 @@ public class QueryFactory<T> implements FactoryBean<T> {
         return new QueryTypeAndQuery(q.type(), q.value(), q.mapper());
     }
 
+    static NamedParameterJdbcTemplate newJdbcTemplate(DataSource dataSource) {
+        return new NamedParameterJdbcTemplate(new QueryGroup.TrackingJdbcTemplate(dataSource));
+    }
+
     //from https://rmannibucau.wordpress.com/2014/03/27/java-8-default-interface-methods-and-jdk-dynamic-proxies/
     private static final Constructor<MethodHandles.Lookup> LOOKUP_CONSTRUCTOR;
     private static final Method PRIVATE_LOOKUP_IN = ReflectionUtils.findMethod(MethodHandles.class, "privateLookupIn", Class.class, MethodHandles.Lookup.class);
@@ -181,16 +315,125 @@ public class QueryFactory<T> implements FactoryBean<T> {
             parameterConverters.addAll(additionalParameterConverters);
         }
 
-        NamedParameterJdbcTemplate jdbc = namedParameterJdbcTemplate == null ? new NamedParameterJdbcTemplate(dataSource) : namedParameterJdbcTemplate;
+        NamedParameterJdbcTemplate jdbc = namedParameterJdbcTemplate == null ? newJdbcTemplate(dataSource) : QueryGroup.tracking(namedParameterJdbcTemplate);
 
-        return (T) Proxy.newProxyInstance(clazz.getClassLoader(),
-                new Class[] { clazz }, (proxy, method, args) -> {
+        PlatformTransactionManager txManager = transactionManager == null ? new DataSourceTransactionManager(jdbc.getJdbcTemplate().getDataSource()) : transactionManager;
+
+        ReplicaRouter replicaRouter = replicaDataSources == null || replicaDataSources.isEmpty() ? null : new ReplicaRouter(replicaDataSources, replicaBalancing);
+
+        ShardRouter shardRouter = shardDataSources == null || shardDataSources.isEmpty() ? null : new ShardRouter(shardDataSources, shardResolver, shardExecutor);
+
+        // the shared snapshots must not see the uncommitted rows of the caller's transaction
+        TransactionTemplate outsideTransaction = new TransactionTemplate(txManager);
+        outsideTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_NOT_SUPPORTED);
+
+        InvalidationLog invalidationLog = invalidationLogTable == null ? null : new InvalidationLog(jdbc, outsideTransaction, invalidationLogTable, invalidationPollMillis);
+
+        Map<Method, KeyBatcher> keyBatchers = new ConcurrentHashMap<>();
+        Map<Method, GroupCommitter> groupCommitters = new ConcurrentHashMap<>();
+        Map<Method, BatchUpdate> batchUpdates = new ConcurrentHashMap<>();
+        Map<Method, ChunkedBatchUpdate> chunkedBatches = new ConcurrentHashMap<>();
+        Map<Method, KeysetPager> keysetPagers = new ConcurrentHashMap<>();
+        Map<Method, ReferenceSnapshot> referenceSnapshots = new ConcurrentHashMap<>();
+
+        AsyncWriteQueues asyncWriteQueues = new AsyncWriteQueues();
+        Map<Method, AsyncWriteQueue> asyncWrites = new HashMap<>();
+        for (Method method : clazz.getMethods()) {
+            if (method.getAnnotation(ScatterGather.class) != null && method.getAnnotation(Query.class) != null) {
+                ShardRouter.validateScatterGather(clazz, method, extractQueryAnnotation(clazz, method));
+            }
+            if (method.getAnnotation(Batched.class) != null) {
+                KeyBatcher.validate(clazz, method, method.getAnnotation(Batched.class));
+            }
+            if (method.getAnnotation(TransactionCached.class) != null && method.getAnnotation(Query.class) != null) {
+                TransactionIdentityMap.validate(clazz, method);
+            }
+            if (method.getAnnotation(Invalidates.class) != null && (method.getAnnotation(AsyncWrite.class) != null || method.getAnnotation(WriteBehind.class) != null)) {
+                throw new IllegalArgumentException(String.format("method %s annotated with @Invalidates in interface %s cannot be deferred with @AsyncWrite or @WriteBehind", method.getName(), clazz.getSimpleName()));
+            }
+            if (method.getAnnotation(WriteBehind.class) != null && method.getAnnotation(Query.class) != null && method.getReturnType() != void.class) {
+                throw new IllegalArgumentException(String.format("method %s annotated with @WriteBehind in interface %s must return void", method.getName(), clazz.getSimpleName()));
+            }
+            AsyncWrite asyncWrite = method.getAnnotation(AsyncWrite.class);
+            if (asyncWrite != null && method.getAnnotation(Query.class) != null) {
+                if (method.getReturnType() != void.class) {
+                    throw new IllegalArgumentException(String.format("method %s annotated with @AsyncWrite in interface %s must return void", method.getName(), clazz.getSimpleName()));
+                }
+                AsyncWriteQueue queue = new AsyncWriteQueue(method.getName(), jdbc, BatchUpdate.of(method, extractQueryAnnotation(clazz, method).query, activeDB), asyncWrite);
+                asyncWrites.put(method, queue);
+                asyncWriteQueues.add(queue);
+            }
+        }
+        createdAsyncWriteQueues.add(asyncWriteQueues);
+
+        // identify the repository for the resources bound to the current transaction
+        Object repositoryKey = new Object();
+        TransactionIdentityMap identityMap = new TransactionIdentityMap();
+
+        // the execution of a query method, once the buffered writes have been flushed
+        InvocationHandler execute = (proxy, method, args) -> {
+            QueryTypeAndQuery qs = extractQueryAnnotation(clazz, method);
+            boolean sharded = shardRouter != null && shardRouter.accept(method);
+            if(method.getAnnotation(ChunkedBatch.class) != null && !sharded) {
+                return chunkedBatches.computeIfAbsent(method, m -> new ChunkedBatchUpdate(m, BatchUpdate.of(m, qs.query, activeDB), txManager, parameterConverters))
+                        .execute(jdbc, args);
+            }
+            GroupCommit groupCommit = method.getAnnotation(GroupCommit.class);
+            if(groupCommit != null && !sharded && !TransactionSynchronizationManager.isActualTransactionActive()) {
+                GroupCommitter groupCommitter = groupCommitters.computeIfAbsent(method, m -> new GroupCommitter(jdbc, txManager, BatchUpdate.of(m, qs.query, activeDB), m, groupCommit));
+                return groupCommitter.execute(QueryType.extractParameters(method, args, parameterConverters, jdbc),
+                        () -> qs.type.apply(qs, jdbc, method, args, columnMapperFactories, parameterConverters));
+            }
+            if(method.getAnnotation(ReferenceTable.class) != null && !sharded) {
+                return referenceSnapshots.computeIfAbsent(method, m -> new ReferenceSnapshot(m, qs, columnMapperFactories, invalidationLog, outsideTransaction, referenceRefreshExecutor)).execute(jdbc, args);
+            }
+            if(method.getAnnotation(Keyset.class) != null && !sharded) {
+                KeysetPager pager = keysetPagers.computeIfAbsent(method, m -> new KeysetPager(m, qs, activeDB, columnMapperFactories, parameterConverters));
+                if(replicaRouter != null && replicaRouter.accept(qs, method)) {
+                    return replicaRouter.execute(replica -> pager.execute(replica, args));
+                }
+                return pager.execute(jdbc, args);
+            }
+            if(sharded) {
+                return shardRouter.execute(method, args, shard -> qs.type.apply(qs, shard, method, args, columnMapperFactories, parameterConverters));
+            } else if(replicaRouter != null && replicaRouter.accept(qs, method)) {
+                return replicaRouter.execute(replica -> qs.type.apply(qs, replica, method, args, columnMapperFactories, parameterConverters));
+            }
+            return qs.type.apply(qs, jdbc, method, args, columnMapperFactories, parameterConverters);
+        };
+
+        InvocationHandler handler = (proxy, method, args) -> {
                     boolean hasAnnotation = method.getAnnotation(Query.class) != null;
-                    if(hasAnnotation) {
+                    Batched batched = method.getAnnotation(Batched.class);
+                    if(batched != null) {
+                        return keyBatchers.computeIfAbsent(method, m -> new KeyBatcher(proxy, clazz, m, batched)).invoke(args[0]);
+                    } else if(hasAnnotation) {
+                        AsyncWriteQueue asyncWriteQueue = asyncWrites.get(method);
+                        if(asyncWriteQueue != null) {
+                            asyncWriteQueue.offer(QueryType.extractParameters(method, args, parameterConverters, jdbc));
+                            return null;
+                        }
                         QueryTypeAndQuery qs = extractQueryAnnotation(clazz, method);
-                        return qs.type.apply(qs, jdbc, method, args, columnMapperFactories, parameterConverters);
+                        boolean sharded = shardRouter != null && shardRouter.accept(method);
+                        WriteBehind writeBehind = method.getAnnotation(WriteBehind.class);
+                        if(writeBehind != null && !sharded && WriteBehindBuffer.isActive()) {
+                            identityMap.invalidate();
+                            WriteBehindBuffer.add(repositoryKey, jdbc, batchUpdates.computeIfAbsent(method, m -> BatchUpdate.of(m, qs.query, activeDB)), QueryType.extractParameters(method, args, parameterConverters, jdbc), writeBehind.batchSize());
+                            return null;
+                        }
+                        WriteBehindBuffer.flush(repositoryKey);
+                        if(!QueryType.isReadOnlyQuery(qs, method)) {
+                            identityMap.invalidate();
+                        } else if(method.getAnnotation(TransactionCached.class) != null && !sharded && TransactionIdentityMap.isActive()) {
+                            return identityMap.get(jdbc, method, QueryType.extractParameters(method, args, parameterConverters, jdbc), args,
+                                    () -> execute.invoke(proxy, method, args));
+                        }
+                        return execute.invoke(proxy, method, args);
                     } else if(method.getReturnType().equals(NamedParameterJdbcTemplate.class) && args == null) {
+                        WriteBehindBuffer.flush(repositoryKey);
                         return jdbc;
+                    } else if(method.getReturnType().equals(AsyncWriteQueues.class) && args == null) {
+                        return asyncWriteQueues;
                     } else if(method.isDefault()) {
                         final Class<?> declaringClass = method.getDeclaringClass();
                         final MethodHandle handle;
@@ -212,6 +455,16 @@ public class QueryFactory<T> implements FactoryBean<T> {
                     } else {
                         throw new IllegalArgumentException(String.format("missing @Query annotation for method %s in interface %s", method.getName(),	clazz.getSimpleName()));
                     }
+                };
+
+        return (T) Proxy.newProxyInstance(clazz.getClassLoader(),
+                new Class[] { clazz }, (proxy, method, args) -> {
+                    Object res = handler.invoke(proxy, method, args);
+                    Invalidates invalidates = method.getAnnotation(Invalidates.class);
+                    if(invalidationLog != null && invalidates != null) {
+                        invalidationLog.append(invalidates.value());
+                    }
+                    return res;
                 }
         );
     }
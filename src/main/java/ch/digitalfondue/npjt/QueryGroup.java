@@ -0,0 +1,254 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Execute a group of repository calls concurrently, outside of the transaction of the caller. If a call fail or the
+ * deadline is reached, the statements of the remaining calls are cancelled.
+ */
+public class QueryGroup implements AutoCloseable {
+
+	private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(r -> {
+		Thread t = new Thread(r, "npjt-query-group");
+		t.setDaemon(true);
+		return t;
+	});
+
+	private static final ThreadLocal<Task> CURRENT_TASK = new ThreadLocal<>();
+
+	// the statements are only cancelled on failure
+	private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+	private final long deadlineNanos;
+	private final Executor executor;
+	private final List<Task> tasks = new ArrayList<>();
+	private final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+	private final CompletableFuture<Void> failed = new CompletableFuture<>();
+
+	private QueryGroup(long deadlineNanos, Executor executor) {
+		this.deadlineNanos = deadlineNanos;
+		this.executor = executor;
+	}
+
+	private QueryGroup(Duration deadline, Executor executor) {
+		this(System.nanoTime() + deadline.toNanos(), executor);
+	}
+
+	static QueryGroup withoutDeadline(Executor executor) {
+		return new QueryGroup(NO_DEADLINE, executor);
+	}
+
+	public static QueryGroup withDeadline(Duration deadline) {
+		return new QueryGroup(deadline, DEFAULT_EXECUTOR);
+	}
+
+	public static QueryGroup withDeadline(Duration deadline, Executor executor) {
+		return new QueryGroup(deadline, executor);
+	}
+
+	/**
+	 * Submit a call, it will be executed immediately in another thread.
+	 *
+	 * @param call
+	 * @param <R>
+	 * @return
+	 */
+	public <R> CompletableFuture<R> submit(Callable<R> call) {
+		CompletableFuture<R> result = new CompletableFuture<>();
+		Task task = new Task(result, deadlineNanos);
+		synchronized (tasks) {
+			tasks.add(task);
+		}
+		if (firstFailure.get() != null) {
+			// the group has already failed
+			task.cancel();
+		}
+		executor.execute(() -> {
+			CURRENT_TASK.set(task);
+			try {
+				if (task.cancelled) {
+					throw new CancellationException("query group cancelled");
+				}
+				result.complete(call.call());
+			} catch (Throwable e) {
+				// the failure is recorded before completing the result, so join() cannot miss it
+				if (firstFailure.compareAndSet(null, e)) {
+					cancel();
+					failed.complete(null);
+				}
+				result.completeExceptionally(e);
+			} finally {
+				CURRENT_TASK.remove();
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Wait for all the submitted calls. If a call fail, the remaining calls are cancelled and the failure is rethrown
+	 * immediately. If the deadline is reached, a {@link QueryTimeoutException} is thrown.
+	 */
+	public void join() {
+		CompletableFuture<?>[] all;
+		synchronized (tasks) {
+			all = tasks.stream().map(t -> t.done).toArray(CompletableFuture[]::new);
+		}
+		try {
+			CompletableFuture<Object> done = CompletableFuture.anyOf(CompletableFuture.allOf(all), failed);
+			if (deadlineNanos == NO_DEADLINE) {
+				done.get();
+			} else {
+				done.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+			}
+		} catch (TimeoutException e) {
+			cancel();
+			throw new QueryTimeoutException("the query group has reached the deadline");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			cancel();
+			throw new CancellationException("interrupted while waiting for the query group");
+		} catch (ExecutionException e) {
+			// handled below using the first failure
+		}
+
+		Throwable failure = firstFailure.get();
+		if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		} else if (failure instanceof Error) {
+			throw (Error) failure;
+		} else if (failure != null) {
+			throw new CompletionException(failure);
+		}
+	}
+
+	/**
+	 * Cancel all the calls that are still running.
+	 */
+	public void cancel() {
+		List<Task> toCancel;
+		synchronized (tasks) {
+			toCancel = new ArrayList<>(tasks);
+		}
+		for (Task task : toCancel) {
+			task.cancel();
+		}
+	}
+
+	@Override
+	public void close() {
+		cancel();
+	}
+
+	private static class Task {
+		private final CompletableFuture<?> done;
+		private final long deadlineNanos;
+		private final List<Statement> statements = new ArrayList<>();
+		private volatile boolean cancelled;
+
+		Task(CompletableFuture<?> done, long deadlineNanos) {
+			this.done = done;
+			this.deadlineNanos = deadlineNanos;
+		}
+
+		synchronized void register(Statement statement) {
+			if (cancelled) {
+				throw new CancellationException("query group cancelled");
+			}
+			statements.add(statement);
+		}
+
+		synchronized void cancel() {
+			if (done.isDone()) {
+				return;
+			}
+			cancelled = true;
+			for (Statement statement : statements) {
+				try {
+					statement.cancel();
+				} catch (SQLException e) {
+					// the statement may be already closed
+				}
+			}
+		}
+	}
+
+	/**
+	 * Return a template with the same configuration whose statements are tracked. A subclass of JdbcTemplate is
+	 * returned as is, as its behaviour cannot be copied.
+	 */
+	static NamedParameterJdbcTemplate tracking(NamedParameterJdbcTemplate jdbc) {
+		if (jdbc.getJdbcOperations().getClass() != JdbcTemplate.class) {
+			return jdbc;
+		}
+		JdbcTemplate source = jdbc.getJdbcTemplate();
+		TrackingJdbcTemplate template = new TrackingJdbcTemplate(source.getDataSource());
+		template.setExceptionTranslator(source.getExceptionTranslator());
+		template.setIgnoreWarnings(source.isIgnoreWarnings());
+		template.setFetchSize(source.getFetchSize());
+		template.setMaxRows(source.getMaxRows());
+		template.setQueryTimeout(source.getQueryTimeout());
+		template.setSkipResultsProcessing(source.isSkipResultsProcessing());
+		template.setSkipUndeclaredResults(source.isSkipUndeclaredResults());
+		template.setResultsMapCaseInsensitive(source.isResultsMapCaseInsensitive());
+		NamedParameterJdbcTemplate tracking = new NamedParameterJdbcTemplate(template);
+		tracking.setCacheLimit(jdbc.getCacheLimit());
+		return tracking;
+	}
+
+	/**
+	 * Track the statements executed by a task of a query group and apply the remaining time as query timeout.
+	 */
+	static class TrackingJdbcTemplate extends JdbcTemplate {
+
+		TrackingJdbcTemplate(DataSource dataSource) {
+			super(dataSource);
+		}
+
+		@Override
+		protected void applyStatementSettings(Statement stmt) throws SQLException {
+			super.applyStatementSettings(stmt);
+			Task task = CURRENT_TASK.get();
+			if (task == null) {
+				return;
+			}
+			task.register(stmt);
+			if (task.deadlineNanos == NO_DEADLINE) {
+				return;
+			}
+			long remaining = task.deadlineNanos - System.nanoTime();
+			if (remaining <= 0) {
+				throw new QueryTimeoutException("the query group has reached the deadline");
+			}
+			int seconds = (int) TimeUnit.NANOSECONDS.toSeconds(remaining + TimeUnit.SECONDS.toNanos(1) - 1);
+			if (stmt.getQueryTimeout() == 0 || stmt.getQueryTimeout() > seconds) {
+				stmt.setQueryTimeout(seconds);
+			}
+		}
+	}
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Identify the execution of a query: the template, the method, the values of the bound parameters and optionally other
+ * arguments of the call.
+ */
+final class QueryKey {
+	private final NamedParameterJdbcTemplate jdbc;
+	private final Method method;
+	private final Object[] parameters;
+	private final int hashCode;
+
+	private QueryKey(NamedParameterJdbcTemplate jdbc, Method method, Object[] parameters) {
+		this.jdbc = jdbc;
+		this.method = method;
+		this.parameters = parameters;
+		this.hashCode = Objects.hash(System.identityHashCode(jdbc), method, Arrays.deepHashCode(parameters));
+	}
+
+	static QueryKey of(NamedParameterJdbcTemplate jdbc, Method method, SqlParameterSource parameters) {
+		return new QueryKey(jdbc, method, parameterValues(parameters));
+	}
+
+	static QueryKey of(NamedParameterJdbcTemplate jdbc, Method method, SqlParameterSource parameters, Object[] otherArgs) {
+		if (otherArgs.length == 0) {
+			return of(jdbc, method, parameters);
+		}
+		return new QueryKey(jdbc, method, new Object[] { parameterValues(parameters), otherArgs });
+	}
+
+	private static Object[] parameterValues(SqlParameterSource parameters) {
+		String[] names = parameters.getParameterNames();
+		if (names == null) {
+			return new Object[0];
+		}
+		Object[] values = new Object[names.length * 2];
+		for (int i = 0; i < names.length; i++) {
+			values[i * 2] = names[i];
+			values[i * 2 + 1] = parameters.getValue(names[i]);
+		}
+		return values;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof QueryKey)) {
+			return false;
+		}
+		QueryKey other = (QueryKey) o;
+		return jdbc == other.jdbc && method.equals(other.method) && Arrays.deepEquals(parameters, other.parameters);
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+}
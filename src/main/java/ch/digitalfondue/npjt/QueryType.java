@@ -19,21 +19,31 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collector;
 
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SingleColumnRowMapper;
 import org.springframework.jdbc.core.namedparam.EmptySqlParameterSource;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.NumberUtils;
 import org.springframework.util.StringUtils;
 
 import ch.digitalfondue.npjt.QueryFactory.QueryTypeAndQuery;
+import ch.digitalfondue.npjt.mapper.ColumnMapper;
 import ch.digitalfondue.npjt.mapper.ColumnMapperFactory;
 import ch.digitalfondue.npjt.mapper.ParameterConverter;
 
@@ -67,14 +77,9 @@ public enum QueryType {
 	EXECUTE {
 
 		/**
-		 * Keep a mapping between a given class and a possible RowMapper.
-		 *
-		 * If the Class has the correct form, a ConstructorAnnotationRowMapper
-		 * will be built and the boolean set to true in the pair. If the class
-		 * has not the correct form, the boolean will be false and the class
-		 * will be used as it is in the jdbc template.
+		 * In flight queries of the methods annotated with @SingleFlight.
 		 */
-		private final Map<Class<Object>, HasRowmapper> cachedClassToMapper = new ConcurrentHashMap<>();
+		private final SingleFlightGroup singleFlightGroup = new SingleFlightGroup();
 
 		@Override
 		Object apply(QueryTypeAndQuery queryTypeAndQuery, NamedParameterJdbcTemplate jdbc,
@@ -84,6 +89,21 @@ public enum QueryType {
 			SqlParameterSource parameters = extractParameters(method, args, parameterConverters, jdbc);
 			switch (action) {
 			case QUERY:
+				int consumerPosition = resultConsumerPosition(method);
+				if (consumerPosition >= 0) {
+					return consume(queryTypeAndQuery, jdbc, method, args[consumerPosition], parameters, columnMapperFactories, consumerPosition);
+				}
+				int collectorPosition = collectorPosition(method);
+				if (collectorPosition >= 0) {
+					return collect(queryTypeAndQuery, jdbc, method, args[collectorPosition], parameters, columnMapperFactories, collectorPosition);
+				}
+				if (method.getAnnotation(MapKey.class) != null) {
+					return toMap(queryTypeAndQuery, jdbc, method, parameters, columnMapperFactories);
+				}
+				if (isSingleFlight(method, queryTypeAndQuery)) {
+					return singleFlightGroup.execute(jdbc, method, parameters,
+							() -> doQuery(queryTypeAndQuery.query, queryTypeAndQuery.rowMapperClass, jdbc, method, parameters, columnMapperFactories));
+				}
 				return doQuery(queryTypeAndQuery.query, queryTypeAndQuery.rowMapperClass, jdbc, method, parameters, columnMapperFactories);
 			case UPDATE:
 				return jdbc.update(queryTypeAndQuery.query, parameters);
@@ -100,8 +120,26 @@ public enum QueryType {
 				NamedParameterJdbcTemplate jdbc, Method method,
 				SqlParameterSource parameters, SortedSet<ColumnMapperFactory> columnMapperFactories) {
 			boolean isReturnOptional = isReturnOptional(method);
-			if (method.getReturnType().isAssignableFrom(List.class) || isReturnOptional) {
+			if (PrimitiveArrays.isPrimitiveArray(method.getReturnType())) {
+				return PrimitiveArrays.query(jdbc, template, parameters, method.getReturnType().getComponentType());
+			} else if (method.getReturnType() == ColumnarResult.class) {
+				return jdbc.query(template, parameters, ColumnarResult::read);
+			} else if (method.getAnnotation(Compact.class) != null) {
+				if (isRowMap(method.getGenericReturnType())) {
+					return CompactRows.single(jdbc.query(template, parameters, CompactRows.extractor()));
+				} else if (method.getReturnType().isAssignableFrom(List.class) && isListOfMaps(method)) {
+					return jdbc.query(template, parameters, CompactRows.extractor());
+				}
+				throw new IllegalArgumentException(String.format("method %s annotated with @Compact must return List<Map<String, Object>> or Map<String, Object>", method.getName()));
+			} else if (method.getReturnType() == OffHeapResult.class) {
+				Class<Object> c = extractGenericMethod(method);
+				return jdbc.query(template, parameters, (ResultSetExtractor<Object>) rs -> OffHeapResult.read(rs, c));
+			} else if (method.getReturnType().isAssignableFrom(List.class) || isReturnOptional) {
 				Class<Object> c = extractGenericMethod(method);
+				SpillToDisk spillToDisk = method.getAnnotation(SpillToDisk.class);
+				if (spillToDisk != null && !isReturnOptional) {
+					return SpilledList.query(jdbc, template, parameters, rowMapperFor(c, rowMapper, columnMapperFactories, method), spillToDisk.maxRowsInMemory(), spillToDisk.fetchSize());
+				}
 				
 				HasRowmapper r = getRowMapper(c, rowMapper, columnMapperFactories);
 				
@@ -117,21 +155,6 @@ public enum QueryType {
 				return handleSingleObject(template, jdbc, parameters, columnMapperFactories, c, r, method);
 			}
 		}
-
-		@SuppressWarnings("unchecked")
-		private HasRowmapper getRowMapper(Class<Object> c, Class<?> rowMapper, SortedSet<ColumnMapperFactory> columnMapperFactories) {
-			
-			if(rowMapper != ConstructorAnnotationRowMapper.class) {
-				try {
-					return new HasRowmapper(true, (RowMapper<Object>) rowMapper.getConstructor().newInstance());
-				} catch (InstantiationException | IllegalAccessException | NoSuchMethodException | InvocationTargetException e) {
-					throw new IllegalArgumentException("Was not able to create a new instance of " + rowMapper + ". It require a 0 args constructor.", e);
-				}
-			} else if (!cachedClassToMapper.containsKey(c)) {
-				cachedClassToMapper.put(c, handleClass(c, columnMapperFactories));
-			}
-			return cachedClassToMapper.get(c);
-		}
 	},
 	/**
 	 * Specialized EXECUTE, will bypass the heuristic to determine if a query is a insert/update/delete or a select, will always treat the query as a select.
@@ -164,6 +187,40 @@ public enum QueryType {
 	abstract Object apply(QueryTypeAndQuery queryTypeAndQuery, NamedParameterJdbcTemplate jdbc,
 						  Method method, Object[] args,
 						  SortedSet<ColumnMapperFactory> columnMapperFactories, SortedSet<ParameterConverter> parameterConverters);
+
+	/**
+	 * Keep a mapping between a given class and a possible RowMapper.
+	 *
+	 * If the Class has the correct form, a ConstructorAnnotationRowMapper
+	 * will be built and the boolean set to true in the pair. If the class
+	 * has not the correct form, the boolean will be false and the class
+	 * will be used as it is in the jdbc template.
+	 */
+	private static final Map<Class<Object>, HasRowmapper> cachedClassToMapper = new ConcurrentHashMap<>();
+
+	@SuppressWarnings("unchecked")
+	private static HasRowmapper getRowMapper(Class<Object> c, Class<?> rowMapper, SortedSet<ColumnMapperFactory> columnMapperFactories) {
+		
+		if(rowMapper != ConstructorAnnotationRowMapper.class) {
+			try {
+				return new HasRowmapper(true, (RowMapper<Object>) rowMapper.getConstructor().newInstance());
+			} catch (InstantiationException | IllegalAccessException | NoSuchMethodException | InvocationTargetException e) {
+				throw new IllegalArgumentException("Was not able to create a new instance of " + rowMapper + ". It require a 0 args constructor.", e);
+			}
+		} else if (!cachedClassToMapper.containsKey(c)) {
+			cachedClassToMapper.put(c, handleClass(c, columnMapperFactories));
+		}
+		return cachedClassToMapper.get(c);
+	}
+
+	/**
+	 * Execute a select and map each row to the given class, as for a method returning List&lt;c&gt;.
+	 */
+	static List<Object> queryForList(String template, Class<?> rowMapper, Class<Object> c,
+			NamedParameterJdbcTemplate jdbc, Method method,
+			SqlParameterSource parameters, SortedSet<ColumnMapperFactory> columnMapperFactories) {
+		return handleList(template, jdbc, parameters, columnMapperFactories, c, getRowMapper(c, rowMapper, columnMapperFactories), method);
+	}
 	
 	private static Object handleSingleObject(String template,
 			NamedParameterJdbcTemplate jdbc, SqlParameterSource parameters,
@@ -200,6 +257,19 @@ public enum QueryType {
 	}
 	
 
+	private static boolean isListOfMaps(Method method) {
+		Type returnType = method.getGenericReturnType();
+		return returnType instanceof ParameterizedType && isRowMap(((ParameterizedType) returnType).getActualTypeArguments()[0]);
+	}
+
+	private static boolean isRowMap(Type type) {
+		if (!(type instanceof ParameterizedType) || ((ParameterizedType) type).getRawType() != Map.class) {
+			return false;
+		}
+		Type[] args = ((ParameterizedType) type).getActualTypeArguments();
+		return args[0] == String.class && args[1] == Object.class;
+	}
+
 	private static boolean isReturnOptional(Method method) {
 		return method.getReturnType().isAssignableFrom(Optional.class);
 	}
@@ -208,15 +278,189 @@ public enum QueryType {
 		
 		for(ColumnMapperFactory mapper : columnMapperFactories) {
 			if(mapper.accept(o, annotations)) {
-				return mapper.getSingleColumnRowMapper(o);
+				return mapper.getSingleColumnRowMapper(o, annotations);
 			}
 		}		
 		return null;
 	}
 
+	private static int resultConsumerPosition(Method method) {
+		Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+		for (int i = 0; i < parameterAnnotations.length; i++) {
+			if (withType(parameterAnnotations[i], ResultConsumer.class) != null) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Pass each mapped row (or chunk of rows) to the consumer annotated with @ResultConsumer, while reading the result set.
+	 */
+	@SuppressWarnings("unchecked")
+	private static Object consume(QueryTypeAndQuery queryTypeAndQuery, NamedParameterJdbcTemplate jdbc, Method method, Object consumer,
+								  SqlParameterSource parameters, SortedSet<ColumnMapperFactory> columnMapperFactories, int consumerPosition) {
+		ResultConsumer resultConsumer = withType(method.getParameterAnnotations()[consumerPosition], ResultConsumer.class);
+		Type consumerType = method.getGenericParameterTypes()[consumerPosition];
+		Type elementType = consumerType instanceof ParameterizedType ? ((ParameterizedType) consumerType).getActualTypeArguments()[0] : Object.class;
+		int chunkSize = resultConsumer.chunkSize();
+		if (chunkSize > 0) {
+			if (!(elementType instanceof ParameterizedType) || ((ParameterizedType) elementType).getRawType() != List.class) {
+				throw new IllegalArgumentException(String.format("the @ResultConsumer parameter of method %s with a chunkSize must be a Consumer<List<T>>", method.getName()));
+			}
+			elementType = ((ParameterizedType) elementType).getActualTypeArguments()[0];
+		}
+		if (!(elementType instanceof Class)) {
+			throw new IllegalArgumentException(String.format("was not able to resolve the mapped class of the @ResultConsumer parameter of method %s", method.getName()));
+		}
+
+		RowMapper<Object> rowMapper = rowMapperFor((Class<Object>) elementType, queryTypeAndQuery.rowMapperClass, columnMapperFactories, method);
+		Consumer<Object> rowConsumer = (Consumer<Object>) consumer;
+		List<Object> chunk = chunkSize > 0 ? new ArrayList<>(chunkSize) : null;
+		long[] count = new long[1];
+		jdbc.query(queryTypeAndQuery.query, parameters, (RowCallbackHandler) rs -> {
+			Object row = rowMapper.mapRow(rs, (int) count[0]++);
+			if (chunk == null) {
+				rowConsumer.accept(row);
+			} else {
+				chunk.add(row);
+				if (chunk.size() == chunkSize) {
+					rowConsumer.accept(new ArrayList<>(chunk));
+					chunk.clear();
+				}
+			}
+		});
+		if (chunk != null && !chunk.isEmpty()) {
+			rowConsumer.accept(chunk);
+		}
+
+		Class<?> returnType = method.getReturnType();
+		if (returnType == int.class || returnType == Integer.class) {
+			return (int) count[0];
+		} else if (returnType == long.class || returnType == Long.class) {
+			return count[0];
+		}
+		return null;
+	}
+
+	private static int collectorPosition(Method method) {
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		for (int i = 0; i < parameterTypes.length; i++) {
+			if (Collector.class.isAssignableFrom(parameterTypes[i])) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Accumulate each mapped row in the Collector parameter while reading the result set, and return the collected
+	 * result.
+	 */
+	@SuppressWarnings("unchecked")
+	private static Object collect(QueryTypeAndQuery queryTypeAndQuery, NamedParameterJdbcTemplate jdbc, Method method, Object collectorArg,
+								  SqlParameterSource parameters, SortedSet<ColumnMapperFactory> columnMapperFactories, int collectorPosition) {
+		Type collectorType = method.getGenericParameterTypes()[collectorPosition];
+		Type elementType = collectorType instanceof ParameterizedType ? ((ParameterizedType) collectorType).getActualTypeArguments()[0] : null;
+		if (!(elementType instanceof Class)) {
+			throw new IllegalArgumentException(String.format("was not able to resolve the mapped class of the Collector parameter of method %s", method.getName()));
+		}
+
+		RowMapper<Object> rowMapper = rowMapperFor((Class<Object>) elementType, queryTypeAndQuery.rowMapperClass, columnMapperFactories, method);
+		Collector<Object, Object, Object> collector = (Collector<Object, Object, Object>) collectorArg;
+		Object container = collector.supplier().get();
+		BiConsumer<Object, Object> accumulator = collector.accumulator();
+		int[] rowNum = new int[1];
+		jdbc.query(queryTypeAndQuery.query, parameters, (RowCallbackHandler) rs -> accumulator.accept(container, rowMapper.mapRow(rs, rowNum[0]++)));
+		return collector.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH) ? container : collector.finisher().apply(container);
+	}
+
+	/**
+	 * Build the Map&lt;K, V&gt; or Map&lt;K, List&lt;V&gt;&gt; of a method annotated with @MapKey while reading the result set.
+	 */
+	@SuppressWarnings("unchecked")
+	private static Map<Object, Object> toMap(QueryTypeAndQuery queryTypeAndQuery, NamedParameterJdbcTemplate jdbc, Method method,
+											 SqlParameterSource parameters, SortedSet<ColumnMapperFactory> columnMapperFactories) {
+		String keyColumn = method.getAnnotation(MapKey.class).value();
+		Type returnType = method.getGenericReturnType();
+		if (!method.getReturnType().isAssignableFrom(LinkedHashMap.class) || !(returnType instanceof ParameterizedType)) {
+			throw new IllegalArgumentException(String.format("method %s annotated with @MapKey must return Map<K, V> or Map<K, List<V>>", method.getName()));
+		}
+		Type[] keyAndValue = ((ParameterizedType) returnType).getActualTypeArguments();
+		Type valueType = keyAndValue[1];
+		boolean grouping = valueType instanceof ParameterizedType && ((ParameterizedType) valueType).getRawType() == List.class;
+		if (grouping) {
+			valueType = ((ParameterizedType) valueType).getActualTypeArguments()[0];
+		}
+		if (!(keyAndValue[0] instanceof Class) || !(valueType instanceof Class)) {
+			throw new IllegalArgumentException(String.format("was not able to resolve the key and value classes of method %s", method.getName()));
+		}
+
+		ColumnMapper keyMapper = columnMapperFor(keyColumn, (Class<?>) keyAndValue[0], columnMapperFactories);
+		Class<Object> valueClass = (Class<Object>) valueType;
+		RowMapper<Object> rowMapper = rowMapperFor(valueClass, queryTypeAndQuery.rowMapperClass, columnMapperFactories, method);
+		// a "simple" value is read from the column that is not the key, if the result set has 2 columns
+		boolean simpleValue = queryTypeAndQuery.rowMapperClass == ConstructorAnnotationRowMapper.class && !getRowMapper(valueClass, queryTypeAndQuery.rowMapperClass, columnMapperFactories).present;
+		ColumnMapper[] valueMapper = new ColumnMapper[1];
+		Map<Object, Object> res = new LinkedHashMap<>();
+		int[] rowNum = new int[1];
+		jdbc.query(queryTypeAndQuery.query, parameters, (RowCallbackHandler) rs -> {
+			if (rowNum[0] == 0 && simpleValue && rs.getMetaData().getColumnCount() == 2) {
+				String valueColumn = JdbcUtils.lookupColumnName(rs.getMetaData(), 1);
+				valueColumn = valueColumn.equalsIgnoreCase(keyColumn) ? JdbcUtils.lookupColumnName(rs.getMetaData(), 2) : valueColumn;
+				valueMapper[0] = columnMapperFor(valueColumn, valueClass, columnMapperFactories);
+			}
+			Object key = keyMapper.getObject(rs);
+			Object value = valueMapper[0] != null ? valueMapper[0].getObject(rs) : rowMapper.mapRow(rs, rowNum[0]);
+			rowNum[0]++;
+			if (grouping) {
+				((List<Object>) res.computeIfAbsent(key, k -> new ArrayList<>())).add(value);
+			} else if (res.putIfAbsent(key, value) != null) {
+				throw new IllegalStateException("duplicate key " + key + " in column " + keyColumn + " for method " + method.getName());
+			}
+		});
+		return res;
+	}
+
+	static ColumnMapper columnMapperFor(String column, Class<?> type, SortedSet<ColumnMapperFactory> columnMapperFactories) {
+		for (ColumnMapperFactory factory : columnMapperFactories) {
+			if (factory.accept(type, new Annotation[0])) {
+				return factory.build(column, type);
+			}
+		}
+		throw new IllegalStateException("Did not found any matching ColumnMapperFactory for class: " + type.getName());
+	}
+
+	/**
+	 * Return the RowMapper used for mapping a row to the given class, as in a method returning List&lt;c&gt;.
+	 */
+	static RowMapper<Object> rowMapperFor(Class<Object> c, Class<?> rowMapper, SortedSet<ColumnMapperFactory> columnMapperFactories, Method method) {
+		HasRowmapper r = getRowMapper(c, rowMapper, columnMapperFactories);
+		if (r.present) {
+			return r.rowMapper;
+		}
+		RowMapper<Object> columnRowMapper = matchToOutput(columnMapperFactories, c, method.getAnnotations());
+		return columnRowMapper != null ? columnRowMapper : new SingleColumnRowMapper<>(c);
+	}
+
+	private static boolean isSingleFlight(Method method, QueryTypeAndQuery queryTypeAndQuery) {
+		return queryTypeAndQuery.type != MODIFYING_WITH_RETURN
+				&& method.getAnnotation(SingleFlight.class) != null
+				&& !TransactionSynchronizationManager.isActualTransactionActive();
+	}
+
+	/**
+	 * Return true if the query is a select that does not modify the data.
+	 */
+	static boolean isReadOnlyQuery(QueryTypeAndQuery queryTypeAndQuery, Method method) {
+		return queryTypeAndQuery.type != TEMPLATE
+				&& queryTypeAndQuery.type != MODIFYING_WITH_RETURN
+				&& actionFromContext(method, queryTypeAndQuery) == JdbcAction.QUERY;
+	}
+
 	private static JdbcAction actionFromContext(Method method, QueryTypeAndQuery queryTypeAndQuery) {
 		
-		if (method.getReturnType().isAssignableFrom(AffectedRowCountAndKey.class)) {
+		if (method.getReturnType() != Object.class && method.getReturnType().isAssignableFrom(AffectedRowCountAndKey.class)) {
 			return JdbcAction.INSERT_W_AUTO_GENERATED_KEY;
 		} else if (queryTypeAndQuery.type == SELECT || queryTypeAndQuery.type == MODIFYING_WITH_RETURN) {
 			return JdbcAction.QUERY;
@@ -256,7 +500,7 @@ public enum QueryType {
 		}
 	}
 
-	private static SqlParameterSource extractParameters(Method m, Object[] args, SortedSet<ParameterConverter> parameterConverters, NamedParameterJdbcTemplate jdbc) {
+	static SqlParameterSource extractParameters(Method m, Object[] args, SortedSet<ParameterConverter> parameterConverters, NamedParameterJdbcTemplate jdbc) {
 
 		Annotation[][] parameterAnnotations = m.getParameterAnnotations();
 		if (parameterAnnotations == null || parameterAnnotations.length == 0) {
@@ -271,30 +515,53 @@ public enum QueryType {
 				Object arg = args[i];
 				Class<?> parameterType = parameterTypes[i];
 				
-				boolean hasAccepted = false;
-				for (ParameterConverter parameterConverter : parameterConverters) {
-					if (parameterConverter.accept(parameterType, parameterAnnotations[i])) {
-						hasAccepted = true;
-						if (parameterConverter instanceof ParameterConverter.AdvancedParameterConverter) {
-							((ParameterConverter.AdvancedParameterConverter) parameterConverter).processParameter(new ParameterConverter.ProcessParameterContext(jdbc, name, arg, parameterType, parameterAnnotations[i], ps));
-						} else {
-							parameterConverter.processParameter(name, arg, parameterType, ps);
-						}
-
-						break;
-					}
-				}
-				
-				if (!hasAccepted) {
+				ParameterConverter parameterConverter = ParameterBinding.findConverter(parameterType, parameterAnnotations[i], parameterConverters);
+				if (parameterConverter == null) {
 					throw new IllegalStateException("Was not able to find a ParameterConverter able to process object: " + arg + " with class " + parameterType);
 				}
+				ParameterBinding.process(parameterConverter, jdbc, name, arg, parameterType, parameterAnnotations[i], ps);
+			} else {
+				List<ParameterBinding> bindings = beanBindings(m, parameterConverters).get(i);
+				if (bindings != null) {
+					BeanProperties.of(parameterTypes[i]).bind(args[i], bindings, jdbc, ps);
+				}
 			}
 		}
 
 		return ps;
 	}
 
-	private static String parameterName(Annotation[] annotation) {
+	/**
+	 * The bindings of the parameters annotated with {@link BindBean} by method, resolved with the given converters.
+	 */
+	private static final Map<Method, BeanBindings> cachedBeanBindings = new ConcurrentHashMap<>();
+
+	private static List<List<ParameterBinding>> beanBindings(Method m, SortedSet<ParameterConverter> parameterConverters) {
+		BeanBindings cached = cachedBeanBindings.get(m);
+		if (cached == null || cached.parameterConverters != parameterConverters) {
+			cached = new BeanBindings(m, parameterConverters);
+			cachedBeanBindings.put(m, cached);
+		}
+		return cached.bindings;
+	}
+
+	private static class BeanBindings {
+		private final SortedSet<ParameterConverter> parameterConverters;
+		// by parameter index, null if the parameter is not annotated with @BindBean
+		private final List<List<ParameterBinding>> bindings = new ArrayList<>();
+
+		BeanBindings(Method m, SortedSet<ParameterConverter> parameterConverters) {
+			this.parameterConverters = parameterConverters;
+			Annotation[][] parameterAnnotations = m.getParameterAnnotations();
+			Class<?>[] parameterTypes = m.getParameterTypes();
+			for (int i = 0; i < parameterTypes.length; i++) {
+				BindBean bindBean = withType(parameterAnnotations[i], BindBean.class);
+				bindings.add(bindBean == null ? null : BeanProperties.of(parameterTypes[i]).bindings(bindBean.value(), parameterConverters));
+			}
+		}
+	}
+
+	static String parameterName(Annotation[] annotation) {
 
 		if (annotation == null) {
 			return null;
@@ -333,7 +600,7 @@ public enum QueryType {
 		return new AffectedRowCountAndKey<>(result, keyClass.cast(key));
 	}
 
-	private static <T extends  Annotation> T withType(Annotation[] annotations, Class<T> c) {
+	static <T extends  Annotation> T withType(Annotation[] annotations, Class<T> c) {
 		if(annotations == null) {
 			return null;
 		}
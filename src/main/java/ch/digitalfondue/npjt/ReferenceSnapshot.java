@@ -0,0 +1,219 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import ch.digitalfondue.npjt.mapper.ColumnMapper;
+import ch.digitalfondue.npjt.mapper.ColumnMapperFactory;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In memory snapshot of a table for the methods annotated with {@link ReferenceTable}.
+ */
+class ReferenceSnapshot {
+
+	private static final ExecutorService DEFAULT_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "npjt-reference-refresh");
+		t.setDaemon(true);
+		return t;
+	});
+
+	static final String VERSION_PARAMETER = "npjtVersion";
+
+	private final Method method;
+	private final ReferenceTable referenceTable;
+	private final String query;
+	private final String refreshQuery;
+	private final RowMapper<Object> rowMapper;
+	private final ColumnMapper keyMapper;
+	private final boolean returnAll;
+	private final boolean returnOptional;
+	private final long refreshNanos;
+	private final long fullReloadNanos;
+	private final AtomicBoolean refreshing = new AtomicBoolean();
+	private final InvalidationLog invalidationLog;
+	private final TransactionTemplate outsideTransaction;
+	private final Executor refreshExecutor;
+	// incremented at each eviction: a load started before the eviction must not be used
+	private final AtomicLong generation = new AtomicLong();
+	private final AtomicReference<Snapshot> current = new AtomicReference<>();
+
+	private volatile long nextRefresh;
+	private volatile long nextFullReload;
+
+	@SuppressWarnings("unchecked")
+	ReferenceSnapshot(Method method, QueryFactory.QueryTypeAndQuery queryTypeAndQuery, SortedSet<ColumnMapperFactory> columnMapperFactories,
+					  InvalidationLog invalidationLog, TransactionTemplate outsideTransaction, Executor refreshExecutor) {
+		this.method = method;
+		this.referenceTable = method.getAnnotation(ReferenceTable.class);
+		this.query = queryTypeAndQuery.query;
+		this.refreshQuery = referenceTable.version().isEmpty() ? null
+				: "SELECT * FROM (" + query + ") npjt_reference WHERE " + referenceTable.version() + " >= :" + VERSION_PARAMETER;
+		this.refreshNanos = TimeUnit.SECONDS.toNanos(referenceTable.refreshSeconds());
+		this.fullReloadNanos = TimeUnit.SECONDS.toNanos(referenceTable.fullReloadSeconds());
+		this.outsideTransaction = outsideTransaction;
+		this.refreshExecutor = refreshExecutor == null ? DEFAULT_EXECUTOR : refreshExecutor;
+
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		Type returnType = method.getGenericReturnType();
+		this.returnAll = parameterTypes.length == 0;
+		this.returnOptional = method.getReturnType() == Optional.class;
+		if (parameterTypes.length > 1 || (returnAll && !method.getReturnType().isAssignableFrom(List.class))) {
+			throw new IllegalArgumentException(String.format("method %s annotated with @ReferenceTable must have one parameter, or no parameters and return List<T>", method.getName()));
+		}
+		Class<Object> mappedClass;
+		if (returnAll || returnOptional) {
+			if (!(returnType instanceof ParameterizedType)) {
+				throw new IllegalArgumentException(String.format("was not able to resolve the mapped class of method %s", method.getName()));
+			}
+			mappedClass = (Class<Object>) ((ParameterizedType) returnType).getActualTypeArguments()[0];
+		} else {
+			mappedClass = (Class<Object>) method.getReturnType();
+		}
+		this.rowMapper = QueryType.rowMapperFor(mappedClass, queryTypeAndQuery.rowMapperClass, columnMapperFactories, method);
+		Class<?> keyType = returnAll ? Object.class : ClassUtils.resolvePrimitiveIfNecessary(parameterTypes[0]);
+		this.keyMapper = QueryType.columnMapperFor(referenceTable.key(), keyType, columnMapperFactories);
+
+		this.invalidationLog = referenceTable.region().isEmpty() ? null : invalidationLog;
+		if (this.invalidationLog != null) {
+			this.invalidationLog.register(referenceTable.region(), this::evict);
+		}
+	}
+
+	private void evict() {
+		generation.incrementAndGet();
+		current.set(null);
+	}
+
+	Object execute(NamedParameterJdbcTemplate jdbc, Object[] args) {
+		if (invalidationLog != null) {
+			invalidationLog.poll();
+		}
+		Snapshot snapshot = current.get();
+		if (snapshot == null) {
+			snapshot = initialLoad(jdbc);
+		} else if (refreshNanos > 0 && System.nanoTime() - nextRefresh >= 0 && refreshing.compareAndSet(false, true)) {
+			long now = System.nanoTime();
+			nextRefresh = now + refreshNanos;
+			boolean fullReload = fullReloadNanos > 0 && now - nextFullReload >= 0;
+			if (fullReload) {
+				nextFullReload = now + fullReloadNanos;
+			}
+			Snapshot previous = snapshot;
+			long loadGeneration = generation.get();
+			refreshExecutor.execute(() -> {
+				try {
+					Snapshot refreshed = load(jdbc, fullReload ? null : previous);
+					if (generation.get() == loadGeneration) {
+						current.compareAndSet(previous, refreshed);
+					}
+				} finally {
+					refreshing.set(false);
+				}
+			});
+		}
+
+		if (returnAll) {
+			return snapshot.values;
+		}
+		Object res = snapshot.rows.get(args[0]);
+		return returnOptional ? Optional.ofNullable(res) : res;
+	}
+
+	private synchronized Snapshot initialLoad(NamedParameterJdbcTemplate jdbc) {
+		Snapshot snapshot = current.get();
+		while (snapshot == null) {
+			if (invalidationLog != null) {
+				invalidationLog.init();
+			}
+			long loadGeneration = generation.get();
+			Snapshot loaded = load(jdbc, null);
+			if (generation.get() == loadGeneration && current.compareAndSet(null, loaded)) {
+				long now = System.nanoTime();
+				nextRefresh = now + refreshNanos;
+				nextFullReload = now + fullReloadNanos;
+			}
+			snapshot = current.get();
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Load the rows modified since the previous snapshot, or all the rows if there is no previous snapshot or no version
+	 * column, and build a new snapshot. The caller's transaction is suspended: the snapshot is shared, it must not
+	 * contain uncommitted rows.
+	 */
+	private Snapshot load(NamedParameterJdbcTemplate jdbc, Snapshot previous) {
+		return outsideTransaction.execute(status -> loadRows(jdbc, previous));
+	}
+
+	private Snapshot loadRows(NamedParameterJdbcTemplate jdbc, Snapshot previous) {
+		boolean incremental = previous != null && refreshQuery != null && previous.version != null;
+		Map<Object, Object> rows = incremental ? new LinkedHashMap<>(previous.rows) : new LinkedHashMap<>();
+		Object[] version = { incremental ? previous.version : null };
+		MapSqlParameterSource parameters = new MapSqlParameterSource();
+		if (incremental) {
+			parameters.addValue(VERSION_PARAMETER, previous.version);
+		}
+		int[] rowNum = new int[1];
+		jdbc.query(incremental ? refreshQuery : query, parameters, (RowCallbackHandler) rs -> {
+			rows.put(keyMapper.getObject(rs), rowMapper.mapRow(rs, rowNum[0]++));
+			if (refreshQuery != null) {
+				version[0] = max(version[0], rs.getObject(referenceTable.version()));
+			}
+		});
+		return new Snapshot(rows, version[0]);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Object max(Object current, Object value) {
+		if (current == null) {
+			return value;
+		}
+		if (value == null) {
+			return current;
+		}
+		return ((Comparable) value).compareTo(current) > 0 ? value : current;
+	}
+
+	private static class Snapshot {
+		private final Map<Object, Object> rows;
+		private final List<Object> values;
+		private final Object version;
+
+		Snapshot(Map<Object, Object> rows, Object version) {
+			this.rows = Collections.unmodifiableMap(rows);
+			this.values = Collections.unmodifiableList(new ArrayList<>(rows.values()));
+			this.version = version;
+		}
+	}
+}
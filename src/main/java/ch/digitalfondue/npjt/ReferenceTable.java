@@ -0,0 +1,69 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Serve a select on a small, read mostly table from an in memory snapshot, refreshed in background every
+ * {@link #refreshSeconds()}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReferenceTable {
+
+	/**
+	 * The unique column used as key of the index.
+	 *
+	 * @return
+	 */
+	String key();
+
+	/**
+	 * The column (a version number or a last update timestamp) used for loading only the modified rows. If empty, the
+	 * whole table is reloaded.
+	 *
+	 * @return
+	 */
+	String version() default "";
+
+	/**
+	 * The delay between two refreshes. If 0, the snapshot is never refreshed.
+	 *
+	 * @return
+	 */
+	int refreshSeconds() default 60;
+
+	/**
+	 * With a {@link #version()}, the delay between two full reloads, that remove the deleted rows. If 0, the table is
+	 * only loaded incrementally.
+	 *
+	 * @return
+	 */
+	int fullReloadSeconds() default 3600;
+
+	/**
+	 * The cache region of the snapshot: when an invalidation log is configured in the {@link QueryFactory}, the snapshot
+	 * is discarded (and loaded again at the next call) when a method annotated with {@link Invalidates} for this region
+	 * is executed on any node.
+	 *
+	 * @return
+	 */
+	String region() default "";
+}
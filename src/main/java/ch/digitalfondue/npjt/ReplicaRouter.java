@@ -0,0 +1,84 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Route the read only queries to the replicas.
+ */
+class ReplicaRouter {
+
+	private final List<NamedParameterJdbcTemplate> replicas = new ArrayList<>();
+	private final AtomicInteger[] outstanding;
+	private final AtomicInteger next = new AtomicInteger();
+	private final ReplicaBalancing balancing;
+
+	ReplicaRouter(List<DataSource> replicaDataSources, ReplicaBalancing balancing) {
+		for (DataSource dataSource : replicaDataSources) {
+			replicas.add(QueryFactory.newJdbcTemplate(dataSource));
+		}
+		this.outstanding = new AtomicInteger[replicas.size()];
+		for (int i = 0; i < outstanding.length; i++) {
+			outstanding[i] = new AtomicInteger();
+		}
+		this.balancing = balancing;
+	}
+
+	/**
+	 * A query can be executed on a replica if it's a read only query and there is no active read-write transaction.
+	 */
+	boolean accept(QueryFactory.QueryTypeAndQuery queryTypeAndQuery, Method method) {
+		boolean inWriteTransaction = TransactionSynchronizationManager.isActualTransactionActive() && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+		return !inWriteTransaction && QueryType.isReadOnlyQuery(queryTypeAndQuery, method);
+	}
+
+	Object execute(JdbcCall call) throws Throwable {
+		int idx = select();
+		outstanding[idx].incrementAndGet();
+		try {
+			return call.apply(replicas.get(idx));
+		} finally {
+			outstanding[idx].decrementAndGet();
+		}
+	}
+
+	private int select() {
+		int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+		if (balancing == ReplicaBalancing.ROUND_ROBIN) {
+			return start;
+		}
+		// the search begin from a rotating position, so the replicas with the same count are used in turn
+		int selected = start;
+		int min = Integer.MAX_VALUE;
+		for (int i = 0; i < outstanding.length; i++) {
+			int idx = (start + i) % outstanding.length;
+			int count = outstanding[idx].get();
+			if (count < min) {
+				min = count;
+				selected = idx;
+			}
+		}
+		return selected;
+	}
+}
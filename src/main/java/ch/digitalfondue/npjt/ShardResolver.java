@@ -0,0 +1,34 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+/**
+ * Select the shard for a given value of the parameter annotated with {@link ShardKey}.
+ */
+public interface ShardResolver {
+
+	/**
+	 * @param shardKey the value of the parameter annotated with {@link ShardKey}
+	 * @param shardCount the number of configured shards
+	 * @return the index of the shard, between 0 and shardCount - 1
+	 */
+	int resolve(Object shardKey, int shardCount);
+
+	/**
+	 * Default resolver: use the hash code of the key.
+	 */
+	ShardResolver HASH = (shardKey, shardCount) -> Math.floorMod(shardKey == null ? 0 : shardKey.hashCode(), shardCount);
+}
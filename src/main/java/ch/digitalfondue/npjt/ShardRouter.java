@@ -0,0 +1,234 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.NumberUtils;
+
+import javax.sql.DataSource;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Route the queries to the shard selected by the parameter annotated with {@link ShardKey}, or to all the shards
+ * for the methods annotated with {@link ScatterGather}.
+ */
+class ShardRouter {
+
+	private static final int NO_SHARD_KEY = -1;
+
+	private static final ExecutorService DEFAULT_EXECUTOR = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()), r -> {
+		Thread t = new Thread(r, "npjt-scatter-gather");
+		t.setDaemon(true);
+		return t;
+	});
+
+	private final List<NamedParameterJdbcTemplate> shards = new ArrayList<>();
+	private final ShardResolver shardResolver;
+	private final Executor executor;
+	private final Map<Method, Integer> shardKeyPositions = new ConcurrentHashMap<>();
+
+	ShardRouter(List<DataSource> shardDataSources, ShardResolver shardResolver, Executor executor) {
+		for (DataSource dataSource : shardDataSources) {
+			shards.add(QueryFactory.newJdbcTemplate(dataSource));
+		}
+		this.shardResolver = shardResolver;
+		this.executor = executor == null ? DEFAULT_EXECUTOR : executor;
+	}
+
+	/**
+	 * Only the read only queries with a return type that can be merged are accepted: a write on all the shards would
+	 * not be atomic.
+	 */
+	static void validateScatterGather(Class<?> clazz, Method method, QueryFactory.QueryTypeAndQuery queryTypeAndQuery) {
+		if (!QueryType.isReadOnlyQuery(queryTypeAndQuery, method)) {
+			throw new IllegalArgumentException(String.format("method %s annotated with @ScatterGather in interface %s must be a read only query", method.getName(), clazz.getSimpleName()));
+		}
+		Class<?> returnType = method.getReturnType();
+		boolean supported = returnType == void.class
+				|| returnType.isAssignableFrom(List.class)
+				|| returnType.isAssignableFrom(Optional.class)
+				|| Number.class.isAssignableFrom(ClassUtils.resolvePrimitiveIfNecessary(returnType));
+		if (!supported) {
+			throw new IllegalArgumentException(String.format("the return type %s of method %s annotated with @ScatterGather in interface %s is not supported", returnType.getName(), method.getName(), clazz.getSimpleName()));
+		}
+	}
+
+	boolean accept(Method method) {
+		return shardKeyPosition(method) != NO_SHARD_KEY || method.getAnnotation(ScatterGather.class) != null;
+	}
+
+	Object execute(Method method, Object[] args, JdbcCall call) throws Throwable {
+		int position = shardKeyPosition(method);
+		if (position != NO_SHARD_KEY) {
+			int idx = shardResolver.resolve(args[position], shards.size());
+			if (idx < 0 || idx >= shards.size()) {
+				throw new IllegalStateException("The shard resolver returned the index " + idx + " for the key " + args[position] + ", but only " + shards.size() + " shards are present");
+			}
+			return call.apply(shards.get(idx));
+		}
+		return scatterGather(method, call);
+	}
+
+	private int shardKeyPosition(Method method) {
+		return shardKeyPositions.computeIfAbsent(method, m -> {
+			Annotation[][] parameterAnnotations = m.getParameterAnnotations();
+			for (int i = 0; i < parameterAnnotations.length; i++) {
+				for (Annotation a : parameterAnnotations[i]) {
+					if (a.annotationType() == ShardKey.class) {
+						return i;
+					}
+				}
+			}
+			return NO_SHARD_KEY;
+		});
+	}
+
+	/**
+	 * The shards are queried as a {@link QueryGroup}: if one of them fails, the statements still running on the other
+	 * shards are cancelled.
+	 */
+	private Object scatterGather(Method method, JdbcCall call) throws Throwable {
+		List<CompletableFuture<Object>> calls = new ArrayList<>(shards.size());
+		try (QueryGroup group = QueryGroup.withoutDeadline(executor)) {
+			for (NamedParameterJdbcTemplate shard : shards) {
+				calls.add(group.submit(() -> {
+					try {
+						return call.apply(shard);
+					} catch (Exception | Error e) {
+						throw e;
+					} catch (Throwable e) {
+						throw new CompletionException(e);
+					}
+				}));
+			}
+			group.join();
+		} catch (CompletionException e) {
+			throw e.getCause();
+		}
+
+		List<Object> results = new ArrayList<>(calls.size());
+		for (CompletableFuture<Object> c : calls) {
+			results.add(c.join());
+		}
+		return merge(method, results);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Object merge(Method method, List<Object> results) {
+		Class<?> returnType = method.getReturnType();
+		if (returnType == void.class) {
+			return null;
+		} else if (returnType.isAssignableFrom(List.class)) {
+			ScatterGather scatterGather = method.getAnnotation(ScatterGather.class);
+			if (scatterGather == null || scatterGather.orderBy().isEmpty()) {
+				List<Object> merged = new ArrayList<>();
+				for (Object res : results) {
+					merged.addAll((List<Object>) res);
+				}
+				return merged;
+			}
+			return mergeOrdered((List<List<Object>>) (List<?>) results, scatterGather);
+		} else if (returnType.isAssignableFrom(Optional.class)) {
+			Optional<Object> found = Optional.empty();
+			for (Object res : results) {
+				Optional<Object> r = (Optional<Object>) res;
+				if (r.isPresent() && found.isPresent()) {
+					throw new IncorrectResultSizeDataAccessException(1, 2);
+				}
+				found = r.isPresent() ? r : found;
+			}
+			return found;
+		} else if (Number.class.isAssignableFrom(ClassUtils.resolvePrimitiveIfNecessary(returnType))) {
+			return sum(results, (Class<? extends Number>) ClassUtils.resolvePrimitiveIfNecessary(returnType), returnType.isPrimitive());
+		}
+		throw new IllegalArgumentException("The return type " + returnType.getName() + " of the method " + method.getName() + " is not supported by @ScatterGather");
+	}
+
+	/**
+	 * Sum the results in the precision of the return type, ignoring the shards without result (e.g. a SUM on an empty
+	 * table).
+	 */
+	private static Number sum(List<Object> results, Class<? extends Number> type, boolean primitive) {
+		boolean floating = type == Double.class || type == Float.class;
+		double doubleSum = 0;
+		BigDecimal decimalSum = BigDecimal.ZERO;
+		boolean found = false;
+		for (Object res : results) {
+			if (res == null) {
+				continue;
+			}
+			found = true;
+			if (floating) {
+				doubleSum += ((Number) res).doubleValue();
+			} else {
+				decimalSum = decimalSum.add(res instanceof BigDecimal ? (BigDecimal) res : new BigDecimal(res.toString()));
+			}
+		}
+		if (!found && !primitive) {
+			return null;
+		}
+		return NumberUtils.convertNumberToTargetClass(floating ? (Number) doubleSum : decimalSum, type);
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static List<Object> mergeOrdered(List<List<Object>> results, ScatterGather scatterGather) {
+		Comparator<Object> byProperty = Comparator.comparing(o -> (Comparable) PropertyExtractors.extract(o, scatterGather.orderBy()), Comparator.nullsFirst(Comparator.naturalOrder()));
+		Comparator<Object> comparator = scatterGather.descending() ? byProperty.reversed() : byProperty;
+
+		// k-way merge: the queue contains the iterator of each shard, ordered by its current head
+		PriorityQueue<PeekingIterator> queue = new PriorityQueue<>((a, b) -> comparator.compare(a.head, b.head));
+		int size = 0;
+		for (List<Object> res : results) {
+			size += res.size();
+			if (!res.isEmpty()) {
+				queue.add(new PeekingIterator(res.iterator()));
+			}
+		}
+		List<Object> merged = new ArrayList<>(size);
+		while (!queue.isEmpty()) {
+			PeekingIterator it = queue.poll();
+			merged.add(it.head);
+			if (it.advance()) {
+				queue.add(it);
+			}
+		}
+		return merged;
+	}
+
+	private static class PeekingIterator {
+		private final Iterator<Object> iterator;
+		private Object head;
+
+		PeekingIterator(Iterator<Object> iterator) {
+			this.iterator = iterator;
+			this.head = iterator.next();
+		}
+
+		boolean advance() {
+			if (iterator.hasNext()) {
+				head = iterator.next();
+				return true;
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Keep track of the in flight queries for the methods annotated with {@link SingleFlight}.
+ */
+class SingleFlightGroup {
+
+	private final ConcurrentMap<QueryKey, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+	Object execute(NamedParameterJdbcTemplate jdbc, Method method, SqlParameterSource parameters, Supplier<Object> query) {
+		QueryKey key = QueryKey.of(jdbc, method, parameters);
+		CompletableFuture<Object> call = new CompletableFuture<>();
+		CompletableFuture<Object> existing = inFlight.putIfAbsent(key, call);
+		if (existing != null) {
+			return await(existing);
+		}
+
+		try {
+			Object res = shared(query.get());
+			call.complete(res);
+			return res;
+		} catch (RuntimeException | Error e) {
+			call.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, call);
+		}
+	}
+
+	/**
+	 * The result is shared between the callers: the collections are returned as unmodifiable views.
+	 */
+	static Object shared(Object res) {
+		if (res instanceof List) {
+			return Collections.unmodifiableList((List<?>) res);
+		} else if (res instanceof Set) {
+			return Collections.unmodifiableSet((Set<?>) res);
+		} else if (res instanceof Map) {
+			return Collections.unmodifiableMap((Map<?, ?>) res);
+		}
+		return res;
+	}
+
+	static <T> T await(CompletableFuture<T> call) {
+		try {
+			return call.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw e;
+		}
+	}
+}
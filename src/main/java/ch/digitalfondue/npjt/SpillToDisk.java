@@ -0,0 +1,37 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * For a select returning a List: keep at most {@link #maxRowsInMemory()} rows on the heap and spill the following
+ * ones to a temporary file.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SpillToDisk {
+	int maxRowsInMemory() default 100000;
+
+	/**
+	 * Fetch size of the statement, so the driver does not buffer the whole result set (PostgreSQL uses it only inside a
+	 * transaction, MySQL requires useCursorFetch=true).
+	 */
+	int fetchSize() default 1000;
+}
@@ -0,0 +1,394 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementCreatorFactory;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.util.ClassUtils;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A read only list of the rows of a select annotated with {@link SpillToDisk}: the first rows are kept on the heap,
+ * the following ones are encoded in a temporary file that is memory mapped once the result set has been read.
+ *
+ * @param <T>
+ */
+class SpilledList<T> extends AbstractList<T> implements RandomAccess, AutoCloseable {
+
+	// maximum size of a mapped segment
+	private static final int SEGMENT_SIZE = 1 << 30;
+
+	private static final byte NULL = 0;
+	private static final byte STRING = 1;
+	private static final byte LONG = 2;
+	private static final byte INTEGER = 3;
+	private static final byte DOUBLE = 4;
+	private static final byte BOOLEAN = 5;
+	private static final byte BIG_DECIMAL = 6;
+	private static final byte BYTES = 7;
+	private static final byte SHORT = 8;
+	private static final byte FLOAT = 9;
+	private static final byte SERIALIZED = 10;
+	private static final byte ARRAY = 11;
+	private static final byte ENUM = 12;
+	private static final byte LOCAL_DATE = 13;
+	private static final byte LOCAL_TIME = 14;
+	private static final byte LOCAL_DATE_TIME = 15;
+	private static final byte INSTANT = 16;
+	private static final byte OFFSET_DATE_TIME = 17;
+	private static final byte ZONED_DATE_TIME = 18;
+	private static final byte TIMESTAMP = 19;
+
+	private static final Map<String, Class<?>> ENUM_TYPES = new ConcurrentHashMap<>();
+
+	private final List<T> inMemory;
+	private final ConstructorAnnotationRowMapper<T> constructorMapper;
+	private final long[] offsets;
+	private final int spilledSize;
+	private final File file;
+	private ByteBuffer[] segments;
+	private final int[] segmentFirstRow;
+	private final long[] segmentStart;
+
+	private SpilledList(List<T> inMemory, ConstructorAnnotationRowMapper<T> constructorMapper, long[] offsets, int spilledSize, File file) throws IOException {
+		this.inMemory = inMemory;
+		this.constructorMapper = constructorMapper;
+		this.offsets = offsets;
+		this.spilledSize = spilledSize;
+		this.file = file;
+
+		// split the file in segments, a row is never split between two segments
+		List<Integer> firstRows = new ArrayList<>();
+		for (int row = 0; row < spilledSize; row++) {
+			if (firstRows.isEmpty() || offsets[row + 1] - offsets[firstRows.get(firstRows.size() - 1)] > SEGMENT_SIZE) {
+				firstRows.add(row);
+			}
+		}
+		this.segmentFirstRow = new int[firstRows.size()];
+		this.segmentStart = new long[firstRows.size()];
+		this.segments = new ByteBuffer[firstRows.size()];
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			for (int i = 0; i < segments.length; i++) {
+				int first = firstRows.get(i);
+				long end = i + 1 < segments.length ? offsets[firstRows.get(i + 1)] : offsets[spilledSize];
+				segmentFirstRow[i] = first;
+				segmentStart[i] = offsets[first];
+				MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, offsets[first], end - offsets[first]);
+				segments[i] = mapped;
+			}
+		}
+		if (!file.delete()) {
+			file.deleteOnExit();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	static <T> List<T> query(NamedParameterJdbcTemplate jdbc, String template, SqlParameterSource parameters, RowMapper<T> rowMapper, int maxRowsInMemory, int fetchSize) {
+		ConstructorAnnotationRowMapper<T> constructorMapper = rowMapper instanceof ConstructorAnnotationRowMapper ? (ConstructorAnnotationRowMapper<T>) rowMapper : null;
+		return jdbc.getJdbcOperations().query(withFetchSize(template, parameters, fetchSize), (ResultSetExtractor<List<T>>) rs -> {
+			List<T> inMemory = new ArrayList<>();
+			int rowNum = 0;
+			// the last result of next() is kept: calling it again after it returned false is not portable
+			boolean hasRow = rs.next();
+			while (hasRow && inMemory.size() < maxRowsInMemory) {
+				inMemory.add(rowMapper.mapRow(rs, rowNum++));
+				hasRow = rs.next();
+			}
+			if (!hasRow) {
+				return inMemory;
+			}
+
+			File file = null;
+			try {
+				file = File.createTempFile("npjt-spill", ".bin");
+				long[] offsets = new long[1024];
+				int spilled = 0;
+				ByteArrayOutputStream row = new ByteArrayOutputStream();
+				DataOutputStream rowOut = new DataOutputStream(row);
+				try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16)) {
+					do {
+						row.reset();
+						write(rowOut, constructorMapper != null ? constructorMapper.mapValues(rs) : rowMapper.mapRow(rs, rowNum));
+						rowNum++;
+						rowOut.flush();
+						row.writeTo(out);
+						offsets = PrimitiveArrays.ensureCapacity(offsets, spilled + 1);
+						offsets[spilled + 1] = offsets[spilled] + row.size();
+						spilled++;
+					} while (rs.next());
+				}
+				return new SpilledList<>(inMemory, constructorMapper, offsets, spilled, file);
+			} catch (IOException e) {
+				if (file != null && !file.delete()) {
+					file.deleteOnExit();
+				}
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	/**
+	 * The statement of the named parameter query, as built by NamedParameterJdbcTemplate, with the given fetch size.
+	 */
+	private static PreparedStatementCreator withFetchSize(String template, SqlParameterSource parameters, int fetchSize) {
+		ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(template);
+		String sql = NamedParameterUtils.substituteNamedParameters(parsedSql, parameters);
+		PreparedStatementCreatorFactory factory = new PreparedStatementCreatorFactory(sql, NamedParameterUtils.buildSqlParameterList(parsedSql, parameters));
+		PreparedStatementCreator creator = factory.newPreparedStatementCreator(NamedParameterUtils.buildValueArray(parsedSql, parameters, null));
+		return con -> {
+			PreparedStatement ps = creator.createPreparedStatement(con);
+			ps.setFetchSize(fetchSize);
+			return ps;
+		};
+	}
+
+	@Override
+	public T get(int index) {
+		if (index < inMemory.size()) {
+			return inMemory.get(index);
+		}
+		int row = index - inMemory.size();
+		if (row >= spilledSize || index < 0) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		ByteBuffer[] mapped = segments;
+		if (mapped == null) {
+			throw new IllegalStateException("the list has been closed");
+		}
+		int segment = Arrays.binarySearch(segmentFirstRow, row);
+		segment = segment >= 0 ? segment : -segment - 2;
+		ByteBuffer buffer = mapped[segment].duplicate();
+		buffer.position((int) (offsets[row] - segmentStart[segment]));
+		Object value = read(buffer);
+		return constructorMapper != null ? newInstance((Object[]) value) : cast(value);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T cast(Object value) {
+		return (T) value;
+	}
+
+	private T newInstance(Object[] values) {
+		try {
+			return constructorMapper.newInstance(values);
+		} catch (SQLException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public int size() {
+		return inMemory.size() + spilledSize;
+	}
+
+	/**
+	 * Release the mapped segments and remove the temporary file.
+	 */
+	@Override
+	public void close() {
+		segments = null;
+		file.delete();
+	}
+
+	private static void write(DataOutputStream out, Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(NULL);
+		} else if (value instanceof String) {
+			out.writeByte(STRING);
+			writeBytes(out, ((String) value).getBytes(StandardCharsets.UTF_8));
+		} else if (value instanceof Long) {
+			out.writeByte(LONG);
+			out.writeLong((Long) value);
+		} else if (value instanceof Integer) {
+			out.writeByte(INTEGER);
+			out.writeInt((Integer) value);
+		} else if (value instanceof Double) {
+			out.writeByte(DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (value instanceof Boolean) {
+			out.writeByte(BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if (value instanceof BigDecimal) {
+			out.writeByte(BIG_DECIMAL);
+			writeBytes(out, value.toString().getBytes(StandardCharsets.UTF_8));
+		} else if (value instanceof byte[]) {
+			out.writeByte(BYTES);
+			writeBytes(out, (byte[]) value);
+		} else if (value instanceof Short) {
+			out.writeByte(SHORT);
+			out.writeShort((Short) value);
+		} else if (value instanceof Float) {
+			out.writeByte(FLOAT);
+			out.writeFloat((Float) value);
+		} else if (value instanceof Enum) {
+			out.writeByte(ENUM);
+			writeBytes(out, ((Enum<?>) value).getDeclaringClass().getName().getBytes(StandardCharsets.UTF_8));
+			writeBytes(out, ((Enum<?>) value).name().getBytes(StandardCharsets.UTF_8));
+		} else if (value instanceof LocalDate) {
+			out.writeByte(LOCAL_DATE);
+			out.writeLong(((LocalDate) value).toEpochDay());
+		} else if (value instanceof LocalTime) {
+			out.writeByte(LOCAL_TIME);
+			out.writeLong(((LocalTime) value).toNanoOfDay());
+		} else if (value instanceof LocalDateTime) {
+			out.writeByte(LOCAL_DATE_TIME);
+			writeLocalDateTime(out, (LocalDateTime) value);
+		} else if (value instanceof Instant) {
+			out.writeByte(INSTANT);
+			out.writeLong(((Instant) value).getEpochSecond());
+			out.writeInt(((Instant) value).getNano());
+		} else if (value instanceof OffsetDateTime) {
+			out.writeByte(OFFSET_DATE_TIME);
+			writeLocalDateTime(out, ((OffsetDateTime) value).toLocalDateTime());
+			out.writeInt(((OffsetDateTime) value).getOffset().getTotalSeconds());
+		} else if (value instanceof ZonedDateTime) {
+			out.writeByte(ZONED_DATE_TIME);
+			writeLocalDateTime(out, ((ZonedDateTime) value).toLocalDateTime());
+			out.writeInt(((ZonedDateTime) value).getOffset().getTotalSeconds());
+			writeBytes(out, ((ZonedDateTime) value).getZone().getId().getBytes(StandardCharsets.UTF_8));
+		} else if (value.getClass() == Timestamp.class) {
+			out.writeByte(TIMESTAMP);
+			out.writeLong(((Timestamp) value).getTime());
+			out.writeInt(((Timestamp) value).getNanos());
+		} else if (value instanceof Object[]) {
+			Object[] values = (Object[]) value;
+			out.writeByte(ARRAY);
+			out.writeInt(values.length);
+			for (Object v : values) {
+				write(out, v);
+			}
+		} else if (value instanceof Serializable) {
+			out.writeByte(SERIALIZED);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+				oos.writeObject(value);
+			}
+			writeBytes(out, bytes.toByteArray());
+		} else {
+			throw new IllegalStateException("Was not able to write the value of class " + value.getClass().getName() + " to disk: it must be Serializable");
+		}
+	}
+
+	private static void writeLocalDateTime(DataOutputStream out, LocalDateTime value) throws IOException {
+		out.writeLong(value.toLocalDate().toEpochDay());
+		out.writeLong(value.toLocalTime().toNanoOfDay());
+	}
+
+	private static LocalDateTime readLocalDateTime(ByteBuffer buffer) {
+		return LocalDateTime.of(LocalDate.ofEpochDay(buffer.getLong()), LocalTime.ofNanoOfDay(buffer.getLong()));
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Object readEnum(ByteBuffer buffer) {
+		String className = new String(readBytes(buffer), StandardCharsets.UTF_8);
+		Class enumType = ENUM_TYPES.computeIfAbsent(className, name -> ClassUtils.resolveClassName(name, SpilledList.class.getClassLoader()));
+		return Enum.valueOf(enumType, new String(readBytes(buffer), StandardCharsets.UTF_8));
+	}
+
+	private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static Object read(ByteBuffer buffer) {
+		byte type = buffer.get();
+		switch (type) {
+		case NULL:
+			return null;
+		case STRING:
+			return new String(readBytes(buffer), StandardCharsets.UTF_8);
+		case LONG:
+			return buffer.getLong();
+		case INTEGER:
+			return buffer.getInt();
+		case DOUBLE:
+			return buffer.getDouble();
+		case BOOLEAN:
+			return buffer.get() != 0;
+		case BIG_DECIMAL:
+			return new BigDecimal(new String(readBytes(buffer), StandardCharsets.UTF_8));
+		case BYTES:
+			return readBytes(buffer);
+		case SHORT:
+			return buffer.getShort();
+		case FLOAT:
+			return buffer.getFloat();
+		case ENUM:
+			return readEnum(buffer);
+		case LOCAL_DATE:
+			return LocalDate.ofEpochDay(buffer.getLong());
+		case LOCAL_TIME:
+			return LocalTime.ofNanoOfDay(buffer.getLong());
+		case LOCAL_DATE_TIME:
+			return readLocalDateTime(buffer);
+		case INSTANT:
+			return Instant.ofEpochSecond(buffer.getLong(), buffer.getInt());
+		case OFFSET_DATE_TIME:
+			return OffsetDateTime.of(readLocalDateTime(buffer), ZoneOffset.ofTotalSeconds(buffer.getInt()));
+		case ZONED_DATE_TIME: {
+			LocalDateTime local = readLocalDateTime(buffer);
+			ZoneOffset offset = ZoneOffset.ofTotalSeconds(buffer.getInt());
+			return ZonedDateTime.ofLocal(local, ZoneId.of(new String(readBytes(buffer), StandardCharsets.UTF_8)), offset);
+		}
+		case TIMESTAMP: {
+			Timestamp timestamp = new Timestamp(buffer.getLong());
+			timestamp.setNanos(buffer.getInt());
+			return timestamp;
+		}
+		case ARRAY: {
+			Object[] values = new Object[buffer.getInt()];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = read(buffer);
+			}
+			return values;
+		}
+		case SERIALIZED:
+			try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(readBytes(buffer)))) {
+				return ois.readObject();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} catch (ClassNotFoundException e) {
+				throw new IllegalStateException(e);
+			}
+		default:
+			throw new IllegalStateException("unknown type " + type);
+		}
+	}
+
+	private static byte[] readBytes(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return bytes;
+	}
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Results of the methods annotated with {@link TransactionCached} for a given repository, bound to the current
+ * transaction. The instance itself is the key of the resource.
+ */
+class TransactionIdentityMap {
+
+	static boolean isActive() {
+		return TransactionSynchronizationManager.isActualTransactionActive() && TransactionSynchronizationManager.isSynchronizationActive();
+	}
+
+	// by method, the indexes of the parameters that are not bound (e.g. PageRequest, or the key of a @ReferenceTable)
+	private static final Map<Method, int[]> UNBOUND_PARAMETERS = new ConcurrentHashMap<>();
+
+	/**
+	 * Reject the methods without result, e.g. with a {@link ResultConsumer}: the consumer would not be called.
+	 */
+	static void validate(Class<?> clazz, Method method) {
+		if (method.getReturnType() == void.class) {
+			throw new IllegalArgumentException(String.format("method %s annotated with @TransactionCached in interface %s must return a value", method.getName(), clazz.getSimpleName()));
+		}
+	}
+
+	private static int[] unboundParameters(Method method) {
+		return UNBOUND_PARAMETERS.computeIfAbsent(method, m -> {
+			Annotation[][] parameterAnnotations = m.getParameterAnnotations();
+			List<Integer> indexes = new ArrayList<>();
+			for (int i = 0; i < parameterAnnotations.length; i++) {
+				if (QueryType.parameterName(parameterAnnotations[i]) == null && !hasBindBean(parameterAnnotations[i])) {
+					indexes.add(i);
+				}
+			}
+			return indexes.stream().mapToInt(Integer::intValue).toArray();
+		});
+	}
+
+	private static boolean hasBindBean(Annotation[] annotations) {
+		for (Annotation a : annotations) {
+			if (a instanceof BindBean) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param parameters the bound parameters
+	 * @param args the arguments of the call: the ones that are not bound are also part of the key
+	 * @return the cached result, shared by all the callers in the transaction: lists, sets and maps are unmodifiable
+	 */
+	Object get(NamedParameterJdbcTemplate jdbc, Method method, SqlParameterSource parameters, Object[] args, Execution query) throws Throwable {
+		@SuppressWarnings("unchecked")
+		Map<QueryKey, Object> results = (Map<QueryKey, Object>) TransactionSynchronizationManager.getResource(this);
+		if (results == null) {
+			results = new HashMap<>();
+			TransactionSynchronizationManager.bindResource(this, results);
+			TransactionSynchronizationManager.registerSynchronization(new ClearSynchronization(this, results));
+		}
+		int[] unbound = unboundParameters(method);
+		Object[] unboundArgs = new Object[unbound.length];
+		for (int i = 0; i < unbound.length; i++) {
+			unboundArgs[i] = args[unbound[i]];
+		}
+		QueryKey key = QueryKey.of(jdbc, method, parameters, unboundArgs);
+		if (results.containsKey(key)) {
+			return results.get(key);
+		}
+		Object res = SingleFlightGroup.shared(query.execute());
+		results.put(key, res);
+		return res;
+	}
+
+	interface Execution {
+		Object execute() throws Throwable;
+	}
+
+	/**
+	 * Discard the results cached in the current transaction, if any.
+	 */
+	void invalidate() {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return;
+		}
+		Object results = TransactionSynchronizationManager.getResource(this);
+		if (results != null) {
+			((Map<?, ?>) results).clear();
+		}
+	}
+
+	private static class ClearSynchronization extends TransactionSynchronizationAdapter {
+
+		private final TransactionIdentityMap identityMap;
+		private final Map<QueryKey, Object> results;
+
+		ClearSynchronization(TransactionIdentityMap identityMap, Map<QueryKey, Object> results) {
+			this.identityMap = identityMap;
+			this.results = results;
+		}
+
+		@Override
+		public void suspend() {
+			TransactionSynchronizationManager.unbindResource(identityMap);
+		}
+
+		@Override
+		public void resume() {
+			TransactionSynchronizationManager.bindResource(identityMap, results);
+		}
+
+		@Override
+		public void afterCompletion(int status) {
+			results.clear();
+			TransactionSynchronizationManager.unbindResourceIfPossible(identityMap);
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright © 2019 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt;
+
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Calls of the methods annotated with {@link WriteBehind} buffered in the current transaction for a given repository.
+ */
+class WriteBehindBuffer {
+
+	private final NamedParameterJdbcTemplate jdbc;
+	// the consecutive calls of the same method are grouped in a batch, the calls are executed in order
+	private final List<Batch> pending = new ArrayList<>();
+	private int size;
+
+	private WriteBehindBuffer(NamedParameterJdbcTemplate jdbc) {
+		this.jdbc = jdbc;
+	}
+
+	static boolean isActive() {
+		return TransactionSynchronizationManager.isActualTransactionActive() && TransactionSynchronizationManager.isSynchronizationActive();
+	}
+
+	/**
+	 * Add a call to the buffer bound to the current transaction.
+	 *
+	 * @param repositoryKey the unique key of the repository
+	 */
+	static void add(Object repositoryKey, NamedParameterJdbcTemplate jdbc, BatchUpdate batchUpdate, SqlParameterSource parameters, int batchSize) {
+		WriteBehindBuffer buffer = (WriteBehindBuffer) TransactionSynchronizationManager.getResource(repositoryKey);
+		if (buffer == null) {
+			buffer = new WriteBehindBuffer(jdbc);
+			TransactionSynchronizationManager.bindResource(repositoryKey, buffer);
+			TransactionSynchronizationManager.registerSynchronization(new FlushSynchronization(repositoryKey, buffer));
+		}
+		Batch last = buffer.pending.isEmpty() ? null : buffer.pending.get(buffer.pending.size() - 1);
+		if (last == null || last.batchUpdate != batchUpdate) {
+			last = new Batch(batchUpdate);
+			buffer.pending.add(last);
+		}
+		last.parameters.add(parameters);
+		buffer.size++;
+		if (buffer.size >= batchSize) {
+			buffer.flush();
+		}
+	}
+
+	/**
+	 * Execute the buffered calls of the current transaction, if any.
+	 *
+	 * @param repositoryKey the unique key of the repository
+	 */
+	static void flush(Object repositoryKey) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return;
+		}
+		WriteBehindBuffer buffer = (WriteBehindBuffer) TransactionSynchronizationManager.getResource(repositoryKey);
+		if (buffer != null) {
+			buffer.flush();
+		}
+	}
+
+	private void flush() {
+		if (size == 0) {
+			return;
+		}
+		List<Batch> toExecute = new ArrayList<>(pending);
+		pending.clear();
+		size = 0;
+		for (Batch batch : toExecute) {
+			batch.batchUpdate.execute(jdbc, batch.parameters.toArray(new SqlParameterSource[0]));
+		}
+	}
+
+	private static class Batch {
+		private final BatchUpdate batchUpdate;
+		private final List<SqlParameterSource> parameters = new ArrayList<>();
+
+		Batch(BatchUpdate batchUpdate) {
+			this.batchUpdate = batchUpdate;
+		}
+	}
+
+	private static class FlushSynchronization extends TransactionSynchronizationAdapter {
+
+		private final Object repositoryKey;
+		private final WriteBehindBuffer buffer;
+
+		FlushSynchronization(Object repositoryKey, WriteBehindBuffer buffer) {
+			this.repositoryKey = repositoryKey;
+			this.buffer = buffer;
+		}
+
+		@Override
+		public void suspend() {
+			TransactionSynchronizationManager.unbindResource(repositoryKey);
+		}
+
+		@Override
+		public void resume() {
+			TransactionSynchronizationManager.bindResource(repositoryKey, buffer);
+		}
+
+		@Override
+		public void flush() {
+			buffer.flush();
+		}
+
+		@Override
+		public void beforeCommit(boolean readOnly) {
+			buffer.flush();
+		}
+
+		@Override
+		public void afterCompletion(int status) {
+			TransactionSynchronizationManager.unbindResourceIfPossible(repositoryKey);
+		}
+	}
+}
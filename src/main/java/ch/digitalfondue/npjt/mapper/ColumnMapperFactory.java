@@ -24,4 +24,18 @@ public interface ColumnMapperFactory {
 	int order();
 	boolean accept(Class<?> paramType, Annotation[] annotations);
 	RowMapper<Object> getSingleColumnRowMapper(Class<Object> clzz);
+
+	/**
+	 * Same as {@link #build(String, Class)}, for the factories that need the annotations of the parameter.
+	 */
+	default ColumnMapper build(String name, Class<?> paramType, Annotation[] annotations) {
+		return build(name, paramType);
+	}
+
+	/**
+	 * Same as {@link #getSingleColumnRowMapper(Class)}, for the factories that need the annotations of the method.
+	 */
+	default RowMapper<Object> getSingleColumnRowMapper(Class<Object> clzz, Annotation[] annotations) {
+		return getSingleColumnRowMapper(clzz);
+	}
 }
@@ -0,0 +1,105 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.mapper;
+
+import java.lang.annotation.Annotation;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * Share the String instances of a low cardinality column annotated with {@link Deduplicate}, up to
+ * {@link #MAX_ENTRIES} distinct values.
+ */
+public class DeduplicateStringMapper extends ColumnMapper {
+
+	private static final int ORDER = Integer.MAX_VALUE - 7;
+	public static final int MAX_ENTRIES = 1024;
+
+	private final InternTable table = new InternTable();
+
+	public DeduplicateStringMapper(String name, Class<?> paramType) {
+		super(name, paramType);
+	}
+
+	@Override
+	public Object getObject(ResultSet rs) throws SQLException {
+		return table.intern(rs.getString(name));
+	}
+
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target({ElementType.PARAMETER, ElementType.METHOD})
+	public @interface Deduplicate {
+	}
+
+	private static class InternTable {
+		private final Map<String, String> values = new ConcurrentHashMap<>();
+
+		String intern(String value) {
+			if (value == null) {
+				return null;
+			}
+			String existing = values.get(value);
+			if (existing != null) {
+				return existing;
+			}
+			if (values.size() >= MAX_ENTRIES) {
+				return value;
+			}
+			existing = values.putIfAbsent(value, value);
+			return existing != null ? existing : value;
+		}
+	}
+
+	public static class Factory implements ColumnMapperFactory {
+
+		@Override
+		public ColumnMapper build(String name, Class<?> paramType) {
+			return new DeduplicateStringMapper(name, paramType);
+		}
+
+		@Override
+		public int order() {
+			return ORDER;
+		}
+
+		@Override
+		public boolean accept(Class<?> paramType, Annotation[] annotations) {
+			if (!String.class.equals(paramType)) {
+				return false;
+			}
+			for (Annotation a : annotations) {
+				if (a.annotationType() == Deduplicate.class) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public RowMapper<Object> getSingleColumnRowMapper(Class<Object> clzz) {
+			InternTable table = new InternTable();
+			return (rs, rowNum) -> table.intern(rs.getString(1));
+		}
+	}
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.mapper;
+
+import java.io.CharArrayReader;
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+/**
+ * Json columns through a pluggable {@link Codec}, streamed without building an intermediate String. The factory and
+ * the converter must be registered for the given annotation.
+ */
+public class JsonCodecMapper extends ColumnMapper {
+
+	private static final int ORDER = Integer.MAX_VALUE - 10;
+
+	private final Codec codec;
+
+	public JsonCodecMapper(String name, Class<?> paramType, Codec codec) {
+		super(name, paramType);
+		this.codec = codec;
+	}
+
+	@Override
+	public Object getObject(ResultSet rs) throws SQLException {
+		return read(codec, rs, rs.findColumn(name), paramType);
+	}
+
+	/**
+	 * Bridge to a json library.
+	 */
+	public interface Codec {
+		Object read(Reader reader, Class<?> type) throws IOException;
+
+		void write(Object value, Class<?> type, Writer writer) throws IOException;
+	}
+
+	private static Object read(Codec codec, ResultSet rs, int columnIdx, Class<?> type) throws SQLException {
+		try (Reader reader = rs.getCharacterStream(columnIdx)) {
+			return reader == null ? null : codec.read(reader, type);
+		} catch (IOException e) {
+			throw new SQLException("was not able to read the json column", e);
+		}
+	}
+
+	private static boolean hasAnnotation(Annotation[] annotations, Class<? extends Annotation> annotation) {
+		if (annotations != null) {
+			for (Annotation a : annotations) {
+				if (a.annotationType() == annotation) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	public static class Converter implements ParameterConverter {
+
+		private final Codec codec;
+		private final Class<? extends Annotation> annotation;
+
+		public Converter(Codec codec, Class<? extends Annotation> annotation) {
+			this.codec = codec;
+			this.annotation = annotation;
+		}
+
+		@Override
+		public boolean accept(Class<?> parameterType, Annotation[] annotations) {
+			return hasAnnotation(annotations, annotation);
+		}
+
+		@Override
+		public void processParameter(String parameterName, Object arg,
+				Class<?> parameterType, MapSqlParameterSource ps) {
+			if (arg == null) {
+				ps.addValue(parameterName, null);
+				return;
+			}
+			JsonWriter writer = new JsonWriter();
+			try {
+				codec.write(arg, parameterType, writer);
+			} catch (IOException e) {
+				throw new IllegalStateException("was not able to write the json parameter " + parameterName, e);
+			}
+			ps.addValue(parameterName, writer);
+		}
+
+		@Override
+		public int order() {
+			return ORDER;
+		}
+	}
+
+	/**
+	 * The written chars are bound as a stream over the internal buffer of the writer.
+	 */
+	private static class JsonWriter extends CharArrayWriter implements SqlTypeValue {
+
+		@Override
+		public void setTypeValue(PreparedStatement ps, int paramIndex, int sqlType, String typeName) throws SQLException {
+			ps.setCharacterStream(paramIndex, new CharArrayReader(buf, 0, count), count);
+		}
+	}
+
+	public static class Factory implements ColumnMapperFactory {
+
+		private final Codec codec;
+		private final Class<? extends Annotation> annotation;
+
+		public Factory(Codec codec, Class<? extends Annotation> annotation) {
+			this.codec = codec;
+			this.annotation = annotation;
+		}
+
+		@Override
+		public ColumnMapper build(String name, Class<?> paramType) {
+			return new JsonCodecMapper(name, paramType, codec);
+		}
+
+		@Override
+		public int order() {
+			return ORDER;
+		}
+
+		@Override
+		public boolean accept(Class<?> paramType, Annotation[] annotations) {
+			return hasAnnotation(annotations, annotation);
+		}
+
+		@Override
+		public RowMapper<Object> getSingleColumnRowMapper(Class<Object> clzz) {
+			return (rs, rowNum) -> read(codec, rs, 1, clzz);
+		}
+	}
+}
@@ -0,0 +1,216 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.mapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.annotation.Annotation;
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+/**
+ * Large objects as {@link InputStream}, {@link Reader} (valid only while the result set is open) or {@link ByteBuffer};
+ * bind a stream with its length with {@link Stream} and {@link CharacterStream}.
+ */
+public class LobMapper extends ColumnMapper {
+
+	private static final int ORDER = Integer.MAX_VALUE - 6;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	public LobMapper(String name, Class<?> paramType) {
+		super(name, paramType);
+	}
+
+	@Override
+	public Object getObject(ResultSet rs) throws SQLException {
+		return read(rs, rs.findColumn(name), paramType);
+	}
+
+	private static boolean isLobType(Class<?> type) {
+		return InputStream.class.equals(type) || Reader.class.equals(type) || ByteBuffer.class.equals(type);
+	}
+
+	private static Object read(ResultSet rs, int columnIdx, Class<?> type) throws SQLException {
+		if (InputStream.class.equals(type)) {
+			return rs.getBinaryStream(columnIdx);
+		} else if (Reader.class.equals(type)) {
+			return rs.getCharacterStream(columnIdx);
+		} else {
+			return toByteBuffer(rs.getBinaryStream(columnIdx));
+		}
+	}
+
+	private static ByteBuffer toByteBuffer(InputStream is) throws SQLException {
+		if (is == null) {
+			return null;
+		}
+		try (InputStream in = is) {
+			byte[] chunk = new byte[BUFFER_SIZE];
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+			int read;
+			while ((read = in.read(chunk)) != -1) {
+				if (buffer.remaining() < read) {
+					ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 2, buffer.position() + read));
+					buffer.flip();
+					larger.put(buffer);
+					buffer = larger;
+				}
+				buffer.put(chunk, 0, read);
+			}
+			buffer.flip();
+			return buffer.asReadOnlyBuffer();
+		} catch (IOException e) {
+			throw new SQLException("was not able to read the binary stream", e);
+		}
+	}
+
+	/**
+	 * An {@link InputStream} parameter with its length in bytes, required by some drivers.
+	 */
+	public static final class Stream {
+		private final InputStream inputStream;
+		private final long length;
+
+		public Stream(InputStream inputStream, long length) {
+			this.inputStream = inputStream;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * A {@link Reader} parameter with its length in characters, required by some drivers.
+	 */
+	public static final class CharacterStream {
+		private final Reader reader;
+		private final long length;
+
+		public CharacterStream(Reader reader, long length) {
+			this.reader = reader;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * Bind an {@link InputStream}, a {@link Reader}, a {@link ByteBuffer}, a {@link Stream} or a
+	 * {@link CharacterStream} as a stream: the driver reads it while executing the statement. The length of a
+	 * ByteBuffer is known and passed to the driver.
+	 */
+	public static class Converter implements ParameterConverter {
+
+		@Override
+		public boolean accept(Class<?> parameterType, Annotation[] annotations) {
+			return isLobType(parameterType) || Stream.class.equals(parameterType) || CharacterStream.class.equals(parameterType);
+		}
+
+		@Override
+		public void processParameter(String parameterName, Object arg,
+				Class<?> parameterType, MapSqlParameterSource ps) {
+			ps.addValue(parameterName, arg != null ? new StreamValue(arg) : null);
+		}
+
+		@Override
+		public int order() {
+			return ORDER;
+		}
+	}
+
+	private static class StreamValue implements SqlTypeValue {
+
+		private final Object value;
+
+		StreamValue(Object value) {
+			this.value = value;
+		}
+
+		@Override
+		public void setTypeValue(PreparedStatement ps, int paramIndex, int sqlType, String typeName) throws SQLException {
+			if (value instanceof InputStream) {
+				ps.setBinaryStream(paramIndex, (InputStream) value);
+			} else if (value instanceof Reader) {
+				ps.setCharacterStream(paramIndex, (Reader) value);
+			} else if (value instanceof Stream) {
+				ps.setBinaryStream(paramIndex, ((Stream) value).inputStream, ((Stream) value).length);
+			} else if (value instanceof CharacterStream) {
+				ps.setCharacterStream(paramIndex, ((CharacterStream) value).reader, ((CharacterStream) value).length);
+			} else {
+				ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+				ps.setBinaryStream(paramIndex, new ByteBufferInputStream(buffer), buffer.remaining());
+			}
+		}
+	}
+
+	private static class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			int count = Math.min(len, buffer.remaining());
+			buffer.get(b, off, count);
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+
+	public static class Factory implements ColumnMapperFactory {
+
+		@Override
+		public ColumnMapper build(String name, Class<?> paramType) {
+			return new LobMapper(name, paramType);
+		}
+
+		@Override
+		public int order() {
+			return ORDER;
+		}
+
+		@Override
+		public boolean accept(Class<?> paramType, Annotation[] annotations) {
+			return isLobType(paramType);
+		}
+
+		@Override
+		public RowMapper<Object> getSingleColumnRowMapper(Class<Object> clzz) {
+			return (rs, rowNum) -> read(rs, 1, clzz);
+		}
+	}
+}
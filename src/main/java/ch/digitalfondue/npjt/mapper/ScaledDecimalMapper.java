@@ -0,0 +1,125 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.mapper;
+
+import java.lang.annotation.Annotation;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * Store a BigDecimal annotated with {@link Scale} as a long in a BIGINT column: the value 12.34 with scale 2 is
+ * stored as 1234. Binding a value with more fractional digits than the scale throws an ArithmeticException.
+ */
+public class ScaledDecimalMapper extends ColumnMapper {
+
+	private static final int ORDER = Integer.MAX_VALUE - 9;
+
+	private final int scale;
+
+	public ScaledDecimalMapper(String name, Class<?> paramType, int scale) {
+		super(name, paramType);
+		this.scale = scale;
+	}
+
+	@Override
+	public Object getObject(ResultSet rs) throws SQLException {
+		return read(rs, rs.findColumn(name), scale);
+	}
+
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target({ElementType.PARAMETER, ElementType.METHOD})
+	public @interface Scale {
+		int value();
+	}
+
+	private static Scale findScale(Annotation[] annotations) {
+		if (annotations != null) {
+			for (Annotation a : annotations) {
+				if (a.annotationType() == Scale.class) {
+					return (Scale) a;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static BigDecimal read(ResultSet rs, int columnIdx, int scale) throws SQLException {
+		long unscaled = rs.getLong(columnIdx);
+		return rs.wasNull() ? null : BigDecimal.valueOf(unscaled, scale);
+	}
+
+	public static class Converter implements ParameterConverter.AdvancedParameterConverter {
+
+		@Override
+		public boolean accept(Class<?> parameterType, Annotation[] annotations) {
+			return BigDecimal.class.equals(parameterType) && findScale(annotations) != null;
+		}
+
+		@Override
+		public void processParameter(ProcessParameterContext ctx) {
+			BigDecimal value = (BigDecimal) ctx.getArg();
+			Long unscaled = value != null ? value.setScale(findScale(ctx.getParameterAnnotations()).value()).unscaledValue().longValueExact() : null;
+			ctx.getParameterSource().addValue(ctx.getParameterName(), unscaled, Types.BIGINT);
+		}
+
+		@Override
+		public int order() {
+			return ORDER;
+		}
+	}
+
+	public static class Factory implements ColumnMapperFactory {
+
+		@Override
+		public ColumnMapper build(String name, Class<?> paramType) {
+			throw new IllegalStateException("the @Scale annotation is required for the column " + name);
+		}
+
+		@Override
+		public ColumnMapper build(String name, Class<?> paramType, Annotation[] annotations) {
+			return new ScaledDecimalMapper(name, paramType, findScale(annotations).value());
+		}
+
+		@Override
+		public int order() {
+			return ORDER;
+		}
+
+		@Override
+		public boolean accept(Class<?> paramType, Annotation[] annotations) {
+			return BigDecimal.class.equals(paramType) && findScale(annotations) != null;
+		}
+
+		@Override
+		public RowMapper<Object> getSingleColumnRowMapper(Class<Object> clzz) {
+			throw new IllegalStateException("the @Scale annotation is required");
+		}
+
+		@Override
+		public RowMapper<Object> getSingleColumnRowMapper(Class<Object> clzz, Annotation[] annotations) {
+			int scale = findScale(annotations).value();
+			return (rs, rowNum) -> read(rs, 1, scale);
+		}
+	}
+}
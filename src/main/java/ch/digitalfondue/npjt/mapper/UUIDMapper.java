@@ -0,0 +1,123 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.mapper;
+
+import java.lang.annotation.Annotation;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.nio.ByteBuffer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.UUID;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+/**
+ * Read a UUID from a 16 bytes binary column, a character column or a native uuid column. A UUID parameter annotated
+ * with {@link Binary} is bound as 16 bytes: the parameters without the annotation are handled by the default
+ * converter.
+ */
+public class UUIDMapper extends ColumnMapper {
+
+	private static final int ORDER = Integer.MAX_VALUE - 8;
+
+	public UUIDMapper(String name, Class<?> paramType) {
+		super(name, paramType);
+	}
+
+	@Override
+	public Object getObject(ResultSet rs) throws SQLException {
+		return toUUID(rs.getObject(name));
+	}
+
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.PARAMETER)
+	public @interface Binary {
+	}
+
+	private static UUID toUUID(Object value) {
+		if (value == null || value instanceof UUID) {
+			return (UUID) value;
+		} else if (value instanceof byte[]) {
+			byte[] bytes = (byte[]) value;
+			if (bytes.length != 16) {
+				throw new IllegalArgumentException("a binary UUID must have 16 bytes, has " + bytes.length);
+			}
+			ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			return new UUID(buffer.getLong(), buffer.getLong());
+		} else {
+			return UUID.fromString(value.toString().trim());
+		}
+	}
+
+	public static byte[] toBytes(UUID uuid) {
+		return ByteBuffer.allocate(16).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array();
+	}
+
+	public static class Converter implements ParameterConverter {
+
+		@Override
+		public boolean accept(Class<?> parameterType, Annotation[] annotations) {
+			if (!UUID.class.equals(parameterType)) {
+				return false;
+			}
+			for (Annotation a : annotations) {
+				if (a.annotationType() == Binary.class) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public void processParameter(String parameterName, Object arg,
+				Class<?> parameterType, MapSqlParameterSource ps) {
+			ps.addValue(parameterName, arg != null ? toBytes((UUID) arg) : null, Types.BINARY);
+		}
+
+		@Override
+		public int order() {
+			return ORDER;
+		}
+	}
+
+	public static class Factory implements ColumnMapperFactory {
+
+		@Override
+		public ColumnMapper build(String name, Class<?> paramType) {
+			return new UUIDMapper(name, paramType);
+		}
+
+		@Override
+		public int order() {
+			return ORDER;
+		}
+
+		@Override
+		public boolean accept(Class<?> paramType, Annotation[] annotations) {
+			return UUID.class.equals(paramType);
+		}
+
+		@Override
+		public RowMapper<Object> getSingleColumnRowMapper(Class<Object> clzz) {
+			return (rs, rowNum) -> toUUID(rs.getObject(1));
+		}
+	}
+}
@@ -29,8 +29,12 @@ public class TestJdbcConfiguration {
 
 	@Bean
 	public DataSource getDataSource() throws Exception {
+		return dataSource("extra");
+	}
+
+	public static DataSource dataSource(String name) throws Exception {
 		Properties prop = new Properties();
-		prop.put("url", "jdbc:hsqldb:mem:extra");
+		prop.put("url", "jdbc:hsqldb:mem:" + name);
 		prop.put("user", "sa");
 		prop.put("password", "");
 		return JDBCDataSourceFactory.createDataSource(prop);
@@ -0,0 +1,146 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.query;
+
+import ch.digitalfondue.npjt.*;
+import ch.digitalfondue.npjt.mapper.ParameterConverter;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+import javax.sql.DataSource;
+import java.lang.annotation.Annotation;
+import java.util.Collections;
+
+public class AsyncWriteQueriesTest {
+
+	private static DataSource dataSource;
+
+	@BeforeClass
+	public static void prepare() throws Exception {
+		dataSource = TestJdbcConfiguration.dataSource("asyncwrite");
+		QueryFactory.from(AsyncWriteQueries.class, "HSQLDB", dataSource).createTable();
+	}
+
+	@Test
+	public void writesAreExecutedInBackground() {
+		AsyncWriteQueries aq = QueryFactory.from(AsyncWriteQueries.class, "HSQLDB", dataSource);
+		for (int i = 0; i < 1000; i++) {
+			aq.insert("BACKGROUND", i);
+		}
+		aq.asyncWriteQueues().flush();
+		AsyncWriteQueue queue = aq.asyncWriteQueues().getQueue("insert");
+		Assert.assertEquals(0, queue.getQueueDepth());
+		Assert.assertEquals(1000, queue.getWrittenCount());
+		Assert.assertEquals(0, queue.getFailedCount());
+		Assert.assertEquals(1000, aq.count("BACKGROUND"));
+	}
+
+	@Test
+	public void dropWhenFull() {
+		AsyncWriteQueries aq = QueryFactory.from(AsyncWriteQueries.class, "HSQLDB", dataSource);
+		for (int i = 0; i < 200; i++) {
+			aq.insertOrDrop("DROP", i);
+		}
+		aq.asyncWriteQueues().flush();
+		AsyncWriteQueue queue = aq.asyncWriteQueues().getQueue("insertOrDrop");
+		Assert.assertEquals(200, queue.getWrittenCount() + queue.getDroppedCount());
+		Assert.assertEquals(queue.getWrittenCount(), aq.count("DROP"));
+	}
+
+	@Test
+	public void pendingWritesAreFlushedOnDestroy() {
+		QueryFactory<AsyncWriteQueries> qf = new QueryFactory<>(AsyncWriteQueries.class, "HSQLDB");
+		qf.setDataSource(dataSource);
+		AsyncWriteQueries aq = qf.getObject();
+		for (int i = 0; i < 100; i++) {
+			aq.insert("DESTROY", i);
+		}
+		qf.destroy();
+		Assert.assertEquals(100, aq.count("DESTROY"));
+
+		// after the shutdown the writes are executed synchronously
+		aq.insert("DESTROY", 100);
+		Assert.assertEquals(101, aq.count("DESTROY"));
+	}
+
+	@Test
+	public void workerIsRestartedAfterAnError() {
+		AsyncWriteQueries aq = QueryFactory.from(AsyncWriteQueries.class, "HSQLDB", dataSource, null, Collections.singletonList(new PoisonConverter()));
+		// the error thrown while binding the batch stops the worker
+		aq.insertPoison("POISON", new Poison(1, true));
+		aq.asyncWriteQueues().flush();
+		aq.insertPoison("POISON", new Poison(2, false));
+		aq.asyncWriteQueues().flush();
+		Assert.assertEquals(1, aq.count("POISON"));
+	}
+
+	public static class Poison {
+		final int value;
+		final boolean fail;
+
+		Poison(int value, boolean fail) {
+			this.value = value;
+			this.fail = fail;
+		}
+	}
+
+	static class PoisonConverter implements ParameterConverter {
+
+		@Override
+		public boolean accept(Class<?> parameterType, Annotation[] annotations) {
+			return parameterType == Poison.class;
+		}
+
+		@Override
+		public void processParameter(String parameterName, Object arg, Class<?> parameterType, MapSqlParameterSource ps) {
+			Poison poison = (Poison) arg;
+			ps.addValue(parameterName, poison.fail ? (SqlTypeValue) (st, idx, sqlType, typeName) -> {
+				throw new AssertionError("poison");
+			} : poison.value);
+		}
+
+		@Override
+		public int order() {
+			return 0;
+		}
+	}
+
+	public interface AsyncWriteQueries {
+
+		@Query("CREATE TABLE LA_ASYNC_WRITE (EVENT_CATEGORY VARCHAR(64) NOT NULL, EVENT_VALUE INTEGER NOT NULL)")
+		void createTable();
+
+		@AsyncWrite
+		@Query("INSERT INTO LA_ASYNC_WRITE(EVENT_CATEGORY, EVENT_VALUE) VALUES(:category, :value)")
+		void insert(@Bind("category") String category, @Bind("value") int value);
+
+		@AsyncWrite(capacity = 2, batchSize = 2, overflow = OverflowPolicy.DROP)
+		@Query("INSERT INTO LA_ASYNC_WRITE(EVENT_CATEGORY, EVENT_VALUE) VALUES(:category, :value)")
+		void insertOrDrop(@Bind("category") String category, @Bind("value") int value);
+
+		@AsyncWrite
+		@Query("INSERT INTO LA_ASYNC_WRITE(EVENT_CATEGORY, EVENT_VALUE) VALUES(:category, :value)")
+		void insertPoison(@Bind("category") String category, @Bind("value") Poison value);
+
+		@Query("SELECT COUNT(*) FROM LA_ASYNC_WRITE WHERE EVENT_CATEGORY = :category")
+		int count(@Bind("category") String category);
+
+		AsyncWriteQueues asyncWriteQueues();
+	}
+}
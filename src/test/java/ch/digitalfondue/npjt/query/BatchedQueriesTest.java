@@ -0,0 +1,170 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.query;
+
+import ch.digitalfondue.npjt.*;
+import ch.digitalfondue.npjt.ConstructorAnnotationRowMapper.Column;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.RowMapper;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BatchedQueriesTest {
+
+	private static final AtomicInteger QUERIES = new AtomicInteger();
+
+	private BatchedQueries bq;
+
+	public static class CountingRowMapper implements RowMapper<Conf> {
+		@Override
+		public Conf mapRow(ResultSet rs, int rowNum) throws SQLException {
+			if (rowNum == 0) {
+				QUERIES.incrementAndGet();
+			}
+			return new Conf(rs.getLong("CONF_ID"), rs.getString("CONF_GROUP"), rs.getString("CONF_VALUE"));
+		}
+	}
+
+	@Before
+	public void prepare() throws Exception {
+		DataSource dataSource = TestJdbcConfiguration.dataSource("batched");
+		bq = QueryFactory.from(BatchedQueries.class, "HSQLDB", dataSource);
+		bq.createTable();
+		for (int i = 0; i < 10; i++) {
+			bq.insertValue(i, i % 2 == 0 ? "EVEN" : "ODD", "VALUE_" + i);
+		}
+		QUERIES.set(0);
+	}
+
+	@After
+	public void cleanup() {
+		bq.dropTable();
+	}
+
+	@Test
+	public void lookupsAreExecutedAsASingleBatch() {
+		List<CompletableFuture<Conf>> results = new ArrayList<>();
+		for (long i = 0; i < 10; i++) {
+			results.add(bq.findByIdAsync(i));
+		}
+		for (int i = 0; i < 10; i++) {
+			Assert.assertEquals("VALUE_" + i, results.get(i).join().value);
+		}
+		Assert.assertEquals(1, QUERIES.get());
+	}
+
+	@Test
+	public void singleObjectOptionalAndListResults() {
+		Assert.assertEquals("VALUE_3", bq.findById(3).value);
+		Assert.assertTrue(bq.findOptionalById(4).isPresent());
+		Assert.assertFalse(bq.findOptionalById(42).isPresent());
+		Assert.assertEquals(5, bq.findByGroup("ODD").size());
+		Assert.assertTrue(bq.findByGroup("NONE").isEmpty());
+		try {
+			bq.findById(42);
+			Assert.fail();
+		} catch (EmptyResultDataAccessException e) {
+			// expected
+		}
+	}
+
+	@Test(timeout = 5000)
+	public void synchronousLookupsDoNotWaitTheWindow() {
+		Assert.assertEquals("VALUE_1", bq.findByIdLongWindow(1).value);
+		Assert.assertEquals(1, QUERIES.get());
+	}
+
+	@Test
+	public void nonFiniteKeys() {
+		Assert.assertTrue(bq.findByDoubleId(3.0).isPresent());
+		Assert.assertFalse(bq.findByDoubleId(Double.NaN).isPresent());
+		Assert.assertFalse(bq.findByDoubleId(Double.POSITIVE_INFINITY).isPresent());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void batchMethodParameterIsValidatedAtCreation() throws Exception {
+		QueryFactory.from(InvalidBatchedQueries.class, "HSQLDB", TestJdbcConfiguration.dataSource("batched"));
+	}
+
+	public interface InvalidBatchedQueries {
+
+		@Query("SELECT * FROM LA_BATCHED WHERE CONF_ID IN (:ids)")
+		List<Conf> findByIds(@Bind("ids") TreeSet<Long> ids);
+
+		@Batched(method = "findByIds", key = "id")
+		Conf findById(long id);
+	}
+
+	public static class Conf {
+		final long id;
+		final String group;
+		final String value;
+
+		public Conf(@Column("CONF_ID") long id, @Column("CONF_GROUP") String group, @Column("CONF_VALUE") String value) {
+			this.id = id;
+			this.group = group;
+			this.value = value;
+		}
+	}
+
+	public interface BatchedQueries {
+
+		@Query("CREATE TABLE LA_BATCHED (CONF_ID INTEGER PRIMARY KEY NOT NULL, CONF_GROUP VARCHAR(64) NOT NULL, CONF_VALUE VARCHAR(255) NOT NULL)")
+		void createTable();
+
+		@Query("DROP TABLE LA_BATCHED")
+		void dropTable();
+
+		@Query("INSERT INTO LA_BATCHED(CONF_ID, CONF_GROUP, CONF_VALUE) VALUES(:id, :group, :value)")
+		int insertValue(@Bind("id") int id, @Bind("group") String group, @Bind("value") String value);
+
+		@Query(value = "SELECT * FROM LA_BATCHED WHERE CONF_ID IN (:ids)", mapper = CountingRowMapper.class)
+		List<Conf> findByIds(@Bind("ids") Collection<Long> ids);
+
+		@Query("SELECT * FROM LA_BATCHED WHERE CONF_GROUP IN (:groups)")
+		List<Conf> findByGroups(@Bind("groups") List<String> groups);
+
+		@Batched(method = "findByIds", key = "id", windowMillis = 50)
+		CompletableFuture<Conf> findByIdAsync(long id);
+
+		@Batched(method = "findByIds", key = "id")
+		Conf findById(long id);
+
+		@Batched(method = "findByIds", key = "id")
+		Optional<Conf> findOptionalById(long id);
+
+		@Batched(method = "findByGroups", key = "group")
+		List<Conf> findByGroup(String group);
+
+		@Batched(method = "findByIds", key = "id", windowMillis = 60_000)
+		Conf findByIdLongWindow(long id);
+
+		@Query("SELECT * FROM LA_BATCHED WHERE CAST(CONF_ID AS DOUBLE) IN (:ids)")
+		List<Conf> findByDoubleIds(@Bind("ids") Collection<Double> ids);
+
+		@Batched(method = "findByDoubleIds", key = "id")
+		Optional<Conf> findByDoubleId(double id);
+	}
+}
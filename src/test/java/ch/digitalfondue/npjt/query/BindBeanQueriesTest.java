@@ -0,0 +1,111 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.query;
+
+import ch.digitalfondue.npjt.*;
+import ch.digitalfondue.npjt.ConstructorAnnotationRowMapper.Column;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.List;
+
+@Transactional
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {TestJdbcConfiguration.class, QueryScannerConfiguration.class})
+public class BindBeanQueriesTest {
+
+	@Autowired
+	BindBeanQueries bq;
+
+	@Before
+	public void prepare() {
+		bq.createTable();
+	}
+
+	@Test
+	public void bindProperties() {
+		Assert.assertEquals(1, bq.insert(new Conf("KEY", "VALUE", BoolConf.TRUE)));
+		Conf conf = bq.findByKey("KEY");
+		Assert.assertEquals("VALUE", conf.getValue());
+		Assert.assertEquals(BoolConf.TRUE, conf.getEnabled());
+
+		Assert.assertEquals(1, bq.update(new Conf("KEY", "UPDATED", BoolConf.FALSE), "KEY"));
+		Assert.assertEquals("UPDATED", bq.findByKey("KEY").getValue());
+		Assert.assertEquals(BoolConf.FALSE, bq.findByKey("KEY").getEnabled());
+	}
+
+	@Test
+	public void bindPropertiesInChunkedBatch() {
+		List<Conf> confs = Arrays.asList(new Conf("B_1", "V", BoolConf.TRUE), new Conf("B_2", "V", BoolConf.TRUE));
+		Assert.assertEquals(2, bq.insertAll(new Conf(null, "BATCH", BoolConf.FALSE), confs));
+		Assert.assertEquals("BATCH", bq.findByKey("B_2").getValue());
+	}
+
+	public enum BoolConf {
+		TRUE, FALSE
+	}
+
+	public static class Conf {
+		private final String key;
+		private final String value;
+		private final BoolConf enabled;
+
+		public Conf(@Column("CONF_KEY") String key, @Column("CONF_VALUE") String value, @Column("CONF_ENABLED") BoolConf enabled) {
+			this.key = key;
+			this.value = value;
+			this.enabled = enabled;
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		public String getValue() {
+			return value;
+		}
+
+		public BoolConf getEnabled() {
+			return enabled;
+		}
+	}
+
+	@QueryRepository
+	public interface BindBeanQueries {
+
+		@Query("CREATE TABLE IF NOT EXISTS LA_BIND_BEAN (CONF_KEY VARCHAR(64) PRIMARY KEY NOT NULL, CONF_VALUE VARCHAR(255) NOT NULL, CONF_ENABLED VARCHAR(5) NOT NULL)")
+		void createTable();
+
+		@Query("INSERT INTO LA_BIND_BEAN(CONF_KEY, CONF_VALUE, CONF_ENABLED) VALUES(:key, :value, :enabled)")
+		int insert(@BindBean Conf conf);
+
+		@Query("UPDATE LA_BIND_BEAN SET CONF_VALUE = :conf.value, CONF_ENABLED = :conf.enabled WHERE CONF_KEY = :key")
+		int update(@BindBean("conf") Conf conf, @Bind("key") String key);
+
+		@ChunkedBatch
+		@Query("INSERT INTO LA_BIND_BEAN(CONF_KEY, CONF_VALUE, CONF_ENABLED) VALUES(:key, :common.value, :enabled)")
+		int insertAll(@BindBean("common") Conf common, List<Conf> confs);
+
+		@Query("SELECT * FROM LA_BIND_BEAN WHERE CONF_KEY = :key")
+		Conf findByKey(@Bind("key") String key);
+	}
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.query;
+
+import ch.digitalfondue.npjt.*;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import javax.sql.DataSource;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class ChunkedBatchQueriesTest {
+
+	private static ChunkedBatchQueries cq;
+
+	@BeforeClass
+	public static void prepare() throws Exception {
+		DataSource dataSource = TestJdbcConfiguration.dataSource("chunkedbatch");
+		cq = QueryFactory.from(ChunkedBatchQueries.class, "HSQLDB", dataSource);
+		cq.createTable();
+	}
+
+	@Test
+	public void streamOfBeans() {
+		AtomicBoolean closed = new AtomicBoolean();
+		Stream<Entry> entries = IntStream.range(0, 2500).mapToObj(i -> new Entry("STREAM_" + i, i)).onClose(() -> closed.set(true));
+		Assert.assertEquals(2500, cq.insertAll("STREAM", entries));
+		Assert.assertEquals(2500, cq.countByCategory("STREAM"));
+		Assert.assertTrue(closed.get());
+	}
+
+	@Test
+	public void streamIsClosedOnFailure() {
+		AtomicBoolean closed = new AtomicBoolean();
+		Stream<Entry> entries = Stream.of(new Entry("FAIL_1", 1), new Entry("FAIL_1", 2)).onClose(() -> closed.set(true));
+		try {
+			cq.insertAll("FAIL", entries);
+			Assert.fail();
+		} catch (DuplicateKeyException e) {
+			Assert.assertTrue(closed.get());
+		}
+	}
+
+	@Test
+	public void iteratorOfMaps() {
+		List<Map<String, Object>> rows = new ArrayList<>();
+		for (int i = 0; i < 7; i++) {
+			Map<String, Object> row = new HashMap<>();
+			row.put("key", "MAP_" + i);
+			row.put("value", i);
+			rows.add(row);
+		}
+		Assert.assertEquals(7L, cq.insertAllMaps("MAP", rows.iterator()));
+		Assert.assertEquals(7, cq.countByCategory("MAP"));
+	}
+
+	@Test
+	public void commitEachChunk() {
+		List<Entry> entries = Arrays.asList(new Entry("COMMIT_1", 1), new Entry("COMMIT_2", 2), new Entry("COMMIT_3", 3), new Entry("COMMIT_1", 4));
+		try {
+			cq.insertAllCommitEachChunk("COMMIT", entries);
+			Assert.fail();
+		} catch (DuplicateKeyException e) {
+			// the first chunk has been committed
+			Assert.assertEquals(2, cq.countByCategory("COMMIT"));
+		}
+	}
+
+	public static class Entry {
+		private final String key;
+		private final int value;
+
+		public Entry(String key, int value) {
+			this.key = key;
+			this.value = value;
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		public int getValue() {
+			return value;
+		}
+	}
+
+	public interface ChunkedBatchQueries {
+
+		@Query("CREATE TABLE LA_CHUNKED_BATCH (ENTRY_KEY VARCHAR(64) PRIMARY KEY NOT NULL, ENTRY_VALUE INTEGER NOT NULL, CATEGORY VARCHAR(64) NOT NULL)")
+		void createTable();
+
+		@ChunkedBatch(chunkSize = 1000)
+		@Query("INSERT INTO LA_CHUNKED_BATCH(ENTRY_KEY, ENTRY_VALUE, CATEGORY) VALUES(:key, :value, :category)")
+		int insertAll(@Bind("category") String category, Stream<Entry> entries);
+
+		@ChunkedBatch(chunkSize = 3)
+		@Query("INSERT INTO LA_CHUNKED_BATCH(ENTRY_KEY, ENTRY_VALUE, CATEGORY) VALUES(:key, :value, :category)")
+		long insertAllMaps(@Bind("category") String category, Iterator<Map<String, Object>> rows);
+
+		@ChunkedBatch(chunkSize = 2, commitEachChunk = true)
+		@Query("INSERT INTO LA_CHUNKED_BATCH(ENTRY_KEY, ENTRY_VALUE, CATEGORY) VALUES(:key, :value, :category)")
+		void insertAllCommitEachChunk(@Bind("category") String category, Iterable<Entry> entries);
+
+		@Query("SELECT COUNT(*) FROM LA_CHUNKED_BATCH WHERE CATEGORY = :category")
+		int countByCategory(@Bind("category") String category);
+	}
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.query;
+
+import ch.digitalfondue.npjt.*;
+import ch.digitalfondue.npjt.mapper.JsonCodecMapper;
+import ch.digitalfondue.npjt.mapper.ScaledDecimalMapper.Scale;
+import ch.digitalfondue.npjt.mapper.UUIDMapper;
+import com.google.gson.Gson;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.annotation.*;
+import java.math.BigDecimal;
+import java.util.*;
+
+@Transactional
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {TestJdbcConfiguration.class, QueryScannerConfiguration.class, CodecQueriesTest.CodecConf.class})
+public class CodecQueriesTest {
+
+	private static final Gson GSON = new Gson();
+
+	@Autowired
+	CodecQueries cq;
+
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target({ElementType.PARAMETER, ElementType.METHOD})
+	public @interface AsJson {
+	}
+
+	private static class GsonCodec implements JsonCodecMapper.Codec {
+
+		@Override
+		public Object read(Reader reader, Class<?> type) {
+			return GSON.fromJson(reader, type);
+		}
+
+		@Override
+		public void write(Object value, Class<?> type, Writer writer) throws IOException {
+			GSON.toJson(value, type, writer);
+		}
+	}
+
+	public static class CodecConf {
+
+		private final GsonCodec codec = new GsonCodec();
+
+		@Bean
+		public JsonCodecMapper.Factory getJsonCodecMapperFactory() {
+			return new JsonCodecMapper.Factory(codec, AsJson.class);
+		}
+
+		@Bean
+		public JsonCodecMapper.Converter getJsonCodecConverter() {
+			return new JsonCodecMapper.Converter(codec, AsJson.class);
+		}
+	}
+
+	@Before
+	public void prepare() {
+		cq.createTable();
+	}
+
+	@Test
+	public void roundTrip() {
+		UUID id = UUID.randomUUID();
+		Map<String, String> conf = Collections.singletonMap("MY_KEY", "MY_VALUE");
+		Assert.assertEquals(1, cq.insert(id, id.toString(), new BigDecimal("12.30"), conf));
+
+		Entry entry = cq.findById(id);
+		Assert.assertEquals(id, entry.id);
+		Assert.assertEquals(id, entry.idAsText);
+		Assert.assertEquals(new BigDecimal("12.30"), entry.amount);
+		Assert.assertEquals(conf, entry.conf);
+
+		Assert.assertEquals(Collections.singletonList(id), cq.findIds());
+		Assert.assertEquals(Collections.singletonList(new BigDecimal("12.30")), cq.findAmounts());
+		Assert.assertEquals(conf, cq.findConf(id));
+		Assert.assertEquals(1230L, cq.findRawAmount(id));
+	}
+
+	@Test
+	public void nullValues() {
+		UUID id = UUID.randomUUID();
+		Assert.assertEquals(1, cq.insert(id, null, null, null));
+		Entry entry = cq.findById(id);
+		Assert.assertNull(entry.idAsText);
+		Assert.assertNull(entry.amount);
+		Assert.assertNull(entry.conf);
+	}
+
+	@Test(expected = ArithmeticException.class)
+	public void tooManyFractionalDigits() {
+		cq.insert(UUID.randomUUID(), null, new BigDecimal("1.234"), null);
+	}
+
+	public static class Entry {
+		final UUID id;
+		final UUID idAsText;
+		final BigDecimal amount;
+		final Map<String, String> conf;
+
+		public Entry(@ConstructorAnnotationRowMapper.Column("ENTRY_ID") UUID id,
+					 @ConstructorAnnotationRowMapper.Column("ENTRY_ID_TEXT") UUID idAsText,
+					 @ConstructorAnnotationRowMapper.Column("ENTRY_AMOUNT") @Scale(2) BigDecimal amount,
+					 @ConstructorAnnotationRowMapper.Column("ENTRY_CONF") @AsJson Map<String, String> conf) {
+			this.id = id;
+			this.idAsText = idAsText;
+			this.amount = amount;
+			this.conf = conf;
+		}
+	}
+
+	@QueryRepository
+	public interface CodecQueries {
+
+		@Query("CREATE TABLE IF NOT EXISTS LA_CODEC (ENTRY_ID BINARY(16) PRIMARY KEY NOT NULL, ENTRY_ID_TEXT CHAR(36), ENTRY_AMOUNT BIGINT, ENTRY_CONF CLOB)")
+		void createTable();
+
+		@Query("INSERT INTO LA_CODEC(ENTRY_ID, ENTRY_ID_TEXT, ENTRY_AMOUNT, ENTRY_CONF) VALUES(:id, :idAsText, :amount, :conf)")
+		int insert(@Bind("id") @UUIDMapper.Binary UUID id, @Bind("idAsText") String idAsText,
+				   @Bind("amount") @Scale(2) BigDecimal amount, @Bind("conf") @AsJson Map<String, String> conf);
+
+		@Query("SELECT * FROM LA_CODEC WHERE ENTRY_ID = :id")
+		Entry findById(@Bind("id") @UUIDMapper.Binary UUID id);
+
+		@Query("SELECT ENTRY_ID FROM LA_CODEC WHERE ENTRY_AMOUNT IS NOT NULL")
+		List<UUID> findIds();
+
+		@Scale(2)
+		@Query("SELECT ENTRY_AMOUNT FROM LA_CODEC WHERE ENTRY_AMOUNT IS NOT NULL")
+		List<BigDecimal> findAmounts();
+
+		@AsJson
+		@Query("SELECT ENTRY_CONF FROM LA_CODEC WHERE ENTRY_ID = :id")
+		Map<String, String> findConf(@Bind("id") @UUIDMapper.Binary UUID id);
+
+		@Query("SELECT ENTRY_AMOUNT FROM LA_CODEC WHERE ENTRY_ID = :id")
+		long findRawAmount(@Bind("id") @UUIDMapper.Binary UUID id);
+	}
+}
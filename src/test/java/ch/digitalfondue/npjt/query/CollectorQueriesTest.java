@@ -0,0 +1,117 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.query;
+
+import ch.digitalfondue.npjt.*;
+import ch.digitalfondue.npjt.ConstructorAnnotationRowMapper.Column;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+@Transactional
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {TestJdbcConfiguration.class, QueryScannerConfiguration.class})
+public class CollectorQueriesTest {
+
+	@Autowired
+	CollectorQueries cq;
+
+	@Before
+	public void prepare() {
+		cq.createTable();
+		for (int i = 1; i <= 6; i++) {
+			cq.insert(i, i % 2 == 0 ? "EVEN" : "ODD", i * 10);
+		}
+	}
+
+	@Test
+	public void collector() {
+		Map<String, List<Entry>> byCategory = cq.collect(Collectors.groupingBy(e -> e.category));
+		Assert.assertEquals(3, byCategory.get("EVEN").size());
+		Assert.assertEquals(3, byCategory.get("ODD").size());
+
+		Assert.assertEquals(210, cq.amounts(Collectors.summingInt(Integer::intValue)).intValue());
+		Assert.assertEquals(90, cq.amountsByCategory("ODD", Collectors.summingInt(Integer::intValue)).intValue());
+	}
+
+	@Test
+	public void mapKey() {
+		Map<Integer, Entry> byId = cq.byId();
+		Assert.assertEquals(6, byId.size());
+		Assert.assertEquals(30, byId.get(3).amount);
+		Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6), new ArrayList<>(byId.keySet()));
+
+		Map<String, List<Integer>> amounts = cq.amountsGroupedByCategory();
+		Assert.assertEquals(Arrays.asList(20, 40, 60), amounts.get("EVEN"));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void duplicateMapKey() {
+		cq.byCategory();
+	}
+
+	public static class Entry {
+		final int id;
+		final String category;
+		final int amount;
+
+		public Entry(@Column("ENTRY_ID") int id, @Column("ENTRY_CATEGORY") String category, @Column("ENTRY_AMOUNT") int amount) {
+			this.id = id;
+			this.category = category;
+			this.amount = amount;
+		}
+	}
+
+	@QueryRepository
+	public interface CollectorQueries {
+
+		@Query("CREATE TABLE IF NOT EXISTS LA_COLLECTOR (ENTRY_ID INTEGER PRIMARY KEY NOT NULL, ENTRY_CATEGORY VARCHAR(64) NOT NULL, ENTRY_AMOUNT INTEGER NOT NULL)")
+		void createTable();
+
+		@Query("INSERT INTO LA_COLLECTOR(ENTRY_ID, ENTRY_CATEGORY, ENTRY_AMOUNT) VALUES(:id, :category, :amount)")
+		int insert(@Bind("id") int id, @Bind("category") String category, @Bind("amount") int amount);
+
+		@Query("SELECT * FROM LA_COLLECTOR")
+		<R> R collect(Collector<Entry, ?, R> collector);
+
+		@Query("SELECT ENTRY_AMOUNT FROM LA_COLLECTOR")
+		Integer amounts(Collector<Integer, ?, Integer> collector);
+
+		@Query("SELECT ENTRY_AMOUNT FROM LA_COLLECTOR WHERE ENTRY_CATEGORY = :category")
+		Integer amountsByCategory(@Bind("category") String category, Collector<Integer, ?, Integer> collector);
+
+		@MapKey("ENTRY_ID")
+		@Query("SELECT * FROM LA_COLLECTOR ORDER BY ENTRY_ID")
+		Map<Integer, Entry> byId();
+
+		@MapKey("ENTRY_CATEGORY")
+		@Query("SELECT ENTRY_CATEGORY, ENTRY_AMOUNT FROM LA_COLLECTOR ORDER BY ENTRY_ID")
+		Map<String, List<Integer>> amountsGroupedByCategory();
+
+		@MapKey("ENTRY_CATEGORY")
+		@Query("SELECT * FROM LA_COLLECTOR")
+		Map<String, Entry> byCategory();
+	}
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.query;
+
+import ch.digitalfondue.npjt.*;
+import ch.digitalfondue.npjt.ConstructorAnnotationRowMapper.Column;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Optional;
+
+public class ColumnsPlaceholderQueriesTest {
+
+	private static ColumnsQueries cq;
+
+	@BeforeClass
+	public static void prepare() throws Exception {
+		DataSource dataSource = TestJdbcConfiguration.dataSource("columnsplaceholder");
+		cq = QueryFactory.from(ColumnsQueries.class, "HSQLDB", dataSource);
+		cq.createTable();
+		cq.insert("KEY", "VALUE", "LONG DESCRIPTION");
+	}
+
+	@Test
+	public void placeholderIsExpanded() {
+		Assert.assertEquals("VALUE", cq.findByKey("KEY").value);
+		Assert.assertEquals(1, cq.findAll().size());
+		Assert.assertTrue(cq.findOptional("KEY").isPresent());
+	}
+
+	@Test
+	public void placeholderInQueryOverride() {
+		Assert.assertEquals(1, cq.findAllOverride().size());
+	}
+
+	@Test
+	public void placeholderIsNotExpandedInTemplates() {
+		Assert.assertEquals("SELECT {columns} FROM LA_COLUMNS", cq.columnsTemplate());
+		Assert.assertEquals("SELECT {columns:Key} FROM LA_COLUMNS c", cq.keysTemplate());
+		Assert.assertEquals("SELECT {columns:ColumnsPlaceholderQueriesTest.Conf} FROM LA_COLUMNS", cq.findAllOverrideTemplate());
+	}
+
+	public static class Conf {
+		final String key;
+		final String value;
+
+		public Conf(@Column("CONF_KEY") String key, @Column("CONF_VALUE") String value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+
+	public static class Key {
+		final String key;
+
+		public Key(@Column("c.CONF_KEY") String key) {
+			this.key = key;
+		}
+	}
+
+	public interface ColumnsQueries {
+
+		@Query("CREATE TABLE LA_COLUMNS (CONF_KEY VARCHAR(64) PRIMARY KEY NOT NULL, CONF_VALUE VARCHAR(255) NOT NULL, CONF_DESCRIPTION CLOB)")
+		void createTable();
+
+		@Query("INSERT INTO LA_COLUMNS(CONF_KEY, CONF_VALUE, CONF_DESCRIPTION) VALUES(:key, :value, :description)")
+		int insert(@Bind("key") String key, @Bind("value") String value, @Bind("description") String description);
+
+		@Query("SELECT {columns} FROM LA_COLUMNS WHERE CONF_KEY = :key")
+		Conf findByKey(@Bind("key") String key);
+
+		@Query(type = QueryType.TEMPLATE, value = "SELECT {columns} FROM LA_COLUMNS")
+		String columnsTemplate();
+
+		@Query(type = QueryType.TEMPLATE, value = "SELECT {columns:Key} FROM LA_COLUMNS c")
+		String keysTemplate();
+
+		@Query("SELECT {columns} FROM LA_COLUMNS")
+		List<Conf> findAll();
+
+		@Query("SELECT {columns} FROM LA_COLUMNS WHERE CONF_KEY = :key")
+		Optional<Conf> findOptional(@Bind("key") String key);
+
+		@Query("SELECT * FROM LA_COLUMNS")
+		@QueriesOverride(@QueryOverride(db = "HSQLDB", value = "SELECT {columns} FROM LA_COLUMNS"))
+		List<Conf> findAllOverride();
+
+		@Query(type = QueryType.TEMPLATE, value = "SELECT * FROM LA_COLUMNS")
+		@QueriesOverride(@QueryOverride(db = "HSQLDB", value = "SELECT {columns:ColumnsPlaceholderQueriesTest.Conf} FROM LA_COLUMNS"))
+		String findAllOverrideTemplate();
+	}
+}
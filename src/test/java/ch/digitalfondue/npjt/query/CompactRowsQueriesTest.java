@@ -0,0 +1,132 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.query;
+
+import ch.digitalfondue.npjt.*;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+
+@Transactional
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {TestJdbcConfiguration.class, QueryScannerConfiguration.class})
+public class CompactRowsQueriesTest {
+
+	@Autowired
+	CompactQueries cq;
+
+	@Before
+	public void prepare() {
+		cq.createTable();
+		for (int i = 1; i <= 10; i++) {
+			cq.insert(i, i % 5 == 0 ? null : "LABEL_" + i);
+		}
+	}
+
+	@Test
+	public void listOfMaps() {
+		List<Map<String, Object>> rows = cq.rows();
+		Assert.assertEquals(10, rows.size());
+		Map<String, Object> first = rows.get(0);
+		Assert.assertEquals(2, first.size());
+		Assert.assertEquals(1L, first.get("ENTRY_ID"));
+		Assert.assertEquals("LABEL_1", first.get("entry_label"));
+		Assert.assertEquals(Arrays.asList("ENTRY_ID", "ENTRY_LABEL"), new ArrayList<>(first.keySet()));
+		Assert.assertTrue(rows.get(4).containsKey("ENTRY_LABEL"));
+		Assert.assertNull(rows.get(4).get("ENTRY_LABEL"));
+		Assert.assertFalse(first.containsKey("OTHER"));
+
+		Map<String, Object> expected = new HashMap<>();
+		expected.put("ENTRY_ID", 1L);
+		expected.put("ENTRY_LABEL", "LABEL_1");
+		Assert.assertEquals(expected, first);
+		Assert.assertEquals(expected.hashCode(), first.hashCode());
+	}
+
+	@Test
+	public void duplicatedLabels() {
+		Map<String, Object> row = cq.duplicatedLabels(3);
+		Assert.assertEquals(2, row.size());
+		Assert.assertEquals("LABEL_3", row.get("ENTRY_ID"));
+		Assert.assertEquals(Arrays.asList("ENTRY_ID", "OTHER"), new ArrayList<>(row.keySet()));
+
+		Map<String, Object> expected = new HashMap<>();
+		expected.put("ENTRY_ID", "LABEL_3");
+		expected.put("OTHER", 3L);
+		Assert.assertEquals(expected, row);
+		Assert.assertEquals(expected.hashCode(), row.hashCode());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void immutable() {
+		cq.rows().get(0).put("ENTRY_ID", 2L);
+	}
+
+	@Test
+	public void singleRow() {
+		Map<String, Object> row = cq.row(3);
+		Assert.assertEquals("LABEL_3", row.get("ENTRY_LABEL"));
+	}
+
+	@Test(expected = IncorrectResultSizeDataAccessException.class)
+	public void singleRowMissing() {
+		cq.row(42);
+	}
+
+	@Test
+	public void fromTemplate() {
+		Assert.assertEquals(5, cq.firstRows(5).size());
+	}
+
+	@QueryRepository
+	public interface CompactQueries {
+
+		@Query("CREATE TABLE IF NOT EXISTS LA_COMPACT (ENTRY_ID BIGINT PRIMARY KEY NOT NULL, ENTRY_LABEL VARCHAR(64))")
+		void createTable();
+
+		@Query("INSERT INTO LA_COMPACT(ENTRY_ID, ENTRY_LABEL) VALUES(:id, :label)")
+		int insert(@Bind("id") long id, @Bind("label") String label);
+
+		@Compact
+		@Query("SELECT ENTRY_ID, ENTRY_LABEL FROM LA_COMPACT ORDER BY ENTRY_ID")
+		List<Map<String, Object>> rows();
+
+		@Compact
+		@Query("SELECT ENTRY_ID, ENTRY_LABEL FROM LA_COMPACT WHERE ENTRY_ID = :id")
+		Map<String, Object> row(@Bind("id") long id);
+
+		@Compact
+		@Query("SELECT ENTRY_ID, ENTRY_ID AS OTHER, ENTRY_LABEL AS ENTRY_ID FROM LA_COMPACT WHERE ENTRY_ID = :id")
+		Map<String, Object> duplicatedLabels(@Bind("id") long id);
+
+		NamedParameterJdbcTemplate getNamedParameterJdbcTemplate();
+
+		default List<Map<String, Object>> firstRows(int count) {
+			return getNamedParameterJdbcTemplate().query("SELECT * FROM LA_COMPACT WHERE ENTRY_ID <= :count",
+				new MapSqlParameterSource("count", count), CompactRows.extractor());
+		}
+	}
+}
@@ -192,6 +192,7 @@ public class CustomJSONQueriesTest {
         Assert.assertTrue(conf.conf.equals(map));
 
         Assert.assertTrue(jq.findConfBoolByKey("TEST").equals(map));
+        Assert.assertEquals(map, jq.findConfObjectByKey("TEST"));
 
     }
 
@@ -222,5 +223,9 @@ public class CustomJSONQueriesTest {
         @Query("SELECT CONF_JSON FROM LA_CONF_JSON WHERE CONF_KEY = :key")
         @AsJson
         Map<String, String> findConfBoolByKey(@Bind("key") String key);
+
+        @Query("SELECT CONF_JSON FROM LA_CONF_JSON WHERE CONF_KEY = :key")
+        @AsJson
+        Map<String, Object> findConfObjectByKey(@Bind("key") String key);
     }
 }
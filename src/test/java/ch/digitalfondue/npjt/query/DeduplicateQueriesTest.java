@@ -0,0 +1,96 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.query;
+
+import ch.digitalfondue.npjt.*;
+import ch.digitalfondue.npjt.mapper.DeduplicateStringMapper.Deduplicate;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Transactional
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {TestJdbcConfiguration.class, QueryScannerConfiguration.class})
+public class DeduplicateQueriesTest {
+
+	@Autowired
+	DeduplicateQueries dq;
+
+	@Before
+	public void prepare() {
+		dq.createTable();
+		String[] countries = { "CH", "IT", "DE" };
+		for (int i = 0; i < 30; i++) {
+			dq.insert(i, countries[i % 3], i % 10 == 0 ? null : "ACTIVE");
+		}
+	}
+
+	@Test
+	public void mappedClass() {
+		List<Customer> customers = dq.findAll();
+		Assert.assertEquals(30, customers.size());
+		Assert.assertEquals("CH", customers.get(0).country);
+		Assert.assertSame(customers.get(0).country, customers.get(3).country);
+		Assert.assertNotSame(customers.get(0).country, customers.get(1).country);
+		Assert.assertSame(customers.get(1).status, customers.get(2).status);
+		Assert.assertNull(customers.get(10).status);
+	}
+
+	@Test
+	public void singleColumn() {
+		List<String> countries = dq.findCountries();
+		Assert.assertEquals(30, countries.size());
+		Assert.assertSame(countries.get(0), countries.get(27));
+	}
+
+	public static class Customer {
+		final String country;
+		final String status;
+		final String label;
+
+		public Customer(@ConstructorAnnotationRowMapper.Column("COUNTRY") @Deduplicate String country,
+						@ConstructorAnnotationRowMapper.Column("STATUS") @Deduplicate String status,
+						@ConstructorAnnotationRowMapper.Column("LABEL") String label) {
+			this.country = country;
+			this.status = status;
+			this.label = label;
+		}
+	}
+
+	@QueryRepository
+	public interface DeduplicateQueries {
+
+		@Query("CREATE TABLE IF NOT EXISTS LA_CUSTOMER (ID INTEGER PRIMARY KEY NOT NULL, COUNTRY VARCHAR(2) NOT NULL, STATUS VARCHAR(16), LABEL VARCHAR(16) NOT NULL)")
+		void createTable();
+
+		@Query("INSERT INTO LA_CUSTOMER(ID, COUNTRY, STATUS, LABEL) VALUES(:id, :country, :status, 'SAME')")
+		int insert(@Bind("id") int id, @Bind("country") String country, @Bind("status") String status);
+
+		@Query("SELECT * FROM LA_CUSTOMER ORDER BY ID")
+		List<Customer> findAll();
+
+		@Deduplicate
+		@Query("SELECT COUNTRY FROM LA_CUSTOMER ORDER BY ID")
+		List<String> findCountries();
+	}
+}
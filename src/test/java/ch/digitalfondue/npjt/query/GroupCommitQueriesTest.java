@@ -0,0 +1,137 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.query;
+
+import ch.digitalfondue.npjt.*;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class GroupCommitQueriesTest {
+
+	private static DataSource dataSource;
+	private static GroupCommitQueries gq;
+
+	@BeforeClass
+	public static void prepare() throws Exception {
+		dataSource = TestJdbcConfiguration.dataSource("groupcommit");
+		gq = QueryFactory.from(GroupCommitQueries.class, "HSQLDB", dataSource);
+		gq.createTable();
+		gq.createAutoTable();
+	}
+
+	@Test
+	public void concurrentInserts() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Integer>> results = new ArrayList<>();
+			for (int i = 0; i < 50; i++) {
+				String key = "KEY_" + i;
+				results.add(executor.submit(() -> gq.insert(key, "VALUE")));
+			}
+			for (Future<Integer> f : results) {
+				Assert.assertEquals(1, f.get(10, TimeUnit.SECONDS).intValue());
+			}
+			Assert.assertEquals(50, gq.count());
+
+			List<Future<AffectedRowCountAndKey<Integer>>> keys = new ArrayList<>();
+			for (int i = 0; i < 20; i++) {
+				String value = "VALUE_" + i;
+				keys.add(executor.submit(() -> gq.insertAuto(value)));
+			}
+			Set<Integer> distinctKeys = new HashSet<>();
+			for (Future<AffectedRowCountAndKey<Integer>> f : keys) {
+				AffectedRowCountAndKey<Integer> res = f.get(10, TimeUnit.SECONDS);
+				Assert.assertEquals(1, res.getAffectedRowCount());
+				distinctKeys.add(res.getKey());
+			}
+			Assert.assertEquals(20, distinctKeys.size());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void onlyTheFailingCallReceiveTheError() throws Exception {
+		gq.insert("DUPLICATE", "VALUE");
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Integer>> results = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				String key = i == 2 ? "DUPLICATE" : "OTHER_" + i;
+				results.add(executor.submit(() -> gq.insert(key, "VALUE")));
+			}
+			for (int i = 0; i < 4; i++) {
+				try {
+					Assert.assertEquals(1, results.get(i).get(10, TimeUnit.SECONDS).intValue());
+					Assert.assertNotEquals(2, i);
+				} catch (ExecutionException e) {
+					Assert.assertEquals(2, i);
+					Assert.assertTrue(e.getCause() instanceof DuplicateKeyException);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void useTheTransactionManagerOfTheFactory() {
+		AtomicInteger transactions = new AtomicInteger();
+		QueryFactory<GroupCommitQueries> qf = new QueryFactory<>(GroupCommitQueries.class, "HSQLDB");
+		qf.setDataSource(dataSource);
+		qf.setTransactionManager(new DataSourceTransactionManager(dataSource) {
+			@Override
+			protected void doBegin(Object transaction, TransactionDefinition definition) {
+				transactions.incrementAndGet();
+				super.doBegin(transaction, definition);
+			}
+		});
+		Assert.assertEquals(1, qf.getObject().insert("TX_MANAGER", "VALUE"));
+		Assert.assertEquals(1, transactions.get());
+	}
+
+	public interface GroupCommitQueries {
+
+		@Query("CREATE TABLE LA_GROUP_COMMIT (CONF_KEY VARCHAR(64) PRIMARY KEY NOT NULL, CONF_VALUE VARCHAR(255) NOT NULL)")
+		void createTable();
+
+		@Query("CREATE TABLE LA_GROUP_COMMIT_AUTO (ID INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY NOT NULL, VALUE VARCHAR(255) NOT NULL)")
+		void createAutoTable();
+
+		@GroupCommit
+		@Query("INSERT INTO LA_GROUP_COMMIT(CONF_KEY, CONF_VALUE) VALUES(:key, :value)")
+		int insert(@Bind("key") String key, @Bind("value") String value);
+
+		@GroupCommit
+		@Query("INSERT INTO LA_GROUP_COMMIT_AUTO(VALUE) VALUES (:value)")
+		AffectedRowCountAndKey<Integer> insertAuto(@Bind("value") String value);
+
+		@Query("SELECT COUNT(*) FROM LA_GROUP_COMMIT WHERE CONF_VALUE = 'VALUE' AND CONF_KEY LIKE 'KEY_%'")
+		int count();
+	}
+}
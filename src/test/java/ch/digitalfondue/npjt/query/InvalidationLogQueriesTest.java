@@ -0,0 +1,167 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.query;
+
+import ch.digitalfondue.npjt.*;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+public class InvalidationLogQueriesTest {
+
+	private static DataSource dataSource;
+
+	@BeforeClass
+	public static void prepare() throws Exception {
+		dataSource = TestJdbcConfiguration.dataSource("invalidationlog");
+		// the log is polled with another connection: it must not wait for the locks of the caller's transaction
+		new JdbcTemplate(dataSource).execute("SET DATABASE TRANSACTION CONTROL MVCC");
+		InvalidationQueries iq = node();
+		iq.createLogTable();
+		iq.createTable();
+		iq.insert("CHF", "Swiss franc");
+		iq.update("CHF", "Swiss franc");
+	}
+
+	// each node has its own repository and its own snapshots
+	private static InvalidationQueries node() {
+		QueryFactory<InvalidationQueries> qf = new QueryFactory<>(InvalidationQueries.class, "HSQLDB");
+		qf.setDataSource(dataSource);
+		qf.setInvalidationLogTable("NPJT_INVALIDATION");
+		qf.setInvalidationPollMillis(0);
+		return qf.getObject();
+	}
+
+	@Test
+	public void invalidatedOnAllNodes() {
+		InvalidationQueries node1 = node();
+		InvalidationQueries node2 = node();
+		Assert.assertEquals("Swiss franc", node1.findByCode("CHF").name);
+		Assert.assertEquals("Swiss franc", node2.findByCode("CHF").name);
+
+		Assert.assertEquals(1, node1.update("CHF", "Franc"));
+		Assert.assertEquals("Franc", node1.findByCode("CHF").name);
+		Assert.assertEquals("Franc", node2.findByCode("CHF").name);
+
+		// a rollback does not append to the log
+		TransactionTemplate tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		tx.execute(status -> {
+			node1.update("CHF", "Rolled back");
+			status.setRollbackOnly();
+			return null;
+		});
+		Assert.assertEquals("Franc", node2.findByCode("CHF").name);
+		Assert.assertEquals("Franc", node1.findByCode("CHF").name);
+
+		// not invalidated without @Invalidates
+		node1.updateWithoutInvalidation("CHF", "Not seen");
+		Assert.assertEquals("Franc", node2.findByCode("CHF").name);
+		node1.update("CHF", "Swiss franc");
+	}
+
+	@Test
+	public void sequencesCommittedOutOfOrderAreNotMissed() {
+		InvalidationQueries node = node();
+		Assert.assertEquals("Swiss franc", node.findByCode("CHF").name);
+		long last = node.lastSequence();
+
+		node.updateWithoutInvalidation("CHF", "Late");
+		node.appendToLog(last + 2, "other");
+		Assert.assertEquals("Swiss franc", node.findByCode("CHF").name);
+
+		// the sequence skipped by the previous poll is committed later
+		node.appendToLog(last + 1, "currency");
+		Assert.assertEquals("Late", node.findByCode("CHF").name);
+		node.update("CHF", "Swiss franc");
+	}
+
+	@Test
+	public void uncommittedInvalidationsAreNotPolled() {
+		InvalidationQueries node1 = node();
+		InvalidationQueries node2 = node();
+		Assert.assertEquals("Swiss franc", node2.findByCode("CHF").name);
+		long last = node1.lastSequence();
+
+		TransactionTemplate tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		tx.execute(status -> {
+			node1.updateWithoutInvalidation("CHF", "Rolled back");
+			node1.appendToLog(last + 1, "currency");
+			Assert.assertEquals("Swiss franc", node2.findByCode("CHF").name);
+			status.setRollbackOnly();
+			return null;
+		});
+		Assert.assertEquals("Swiss franc", node2.findByCode("CHF").name);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void deferredInvalidationIsRejected() {
+		QueryFactory<DeferredInvalidationQueries> qf = new QueryFactory<>(DeferredInvalidationQueries.class, "HSQLDB");
+		qf.setDataSource(dataSource);
+		qf.getObject();
+	}
+
+	public interface DeferredInvalidationQueries {
+		@AsyncWrite
+		@Invalidates("currency")
+		@Query("UPDATE LA_INVALIDATION_CURRENCY SET NAME = :name WHERE CODE = :code")
+		void update(@Bind("code") String code, @Bind("name") String name);
+	}
+
+	public static class Currency {
+		final String code;
+		final String name;
+
+		public Currency(@ConstructorAnnotationRowMapper.Column("CODE") String code,
+						@ConstructorAnnotationRowMapper.Column("NAME") String name) {
+			this.code = code;
+			this.name = name;
+		}
+	}
+
+	public interface InvalidationQueries {
+
+		@Query("CREATE TABLE NPJT_INVALIDATION (SEQ BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY NOT NULL, REGION VARCHAR(255) NOT NULL)")
+		void createLogTable();
+
+		@Query("SELECT MAX(SEQ) FROM NPJT_INVALIDATION")
+		long lastSequence();
+
+		@Query("INSERT INTO NPJT_INVALIDATION(SEQ, REGION) VALUES(:seq, :region)")
+		int appendToLog(@Bind("seq") long seq, @Bind("region") String region);
+
+		@Query("CREATE TABLE LA_INVALIDATION_CURRENCY (CODE CHAR(3) PRIMARY KEY NOT NULL, NAME VARCHAR(64) NOT NULL)")
+		void createTable();
+
+		@Query("INSERT INTO LA_INVALIDATION_CURRENCY(CODE, NAME) VALUES(:code, :name)")
+		int insert(@Bind("code") String code, @Bind("name") String name);
+
+		@Invalidates("currency")
+		@Query("UPDATE LA_INVALIDATION_CURRENCY SET NAME = :name WHERE CODE = :code")
+		int update(@Bind("code") String code, @Bind("name") String name);
+
+		@Query("UPDATE LA_INVALIDATION_CURRENCY SET NAME = :name WHERE CODE = :code")
+		int updateWithoutInvalidation(@Bind("code") String code, @Bind("name") String name);
+
+		@ReferenceTable(key = "CODE", refreshSeconds = 0, region = "currency")
+		@Query("SELECT * FROM LA_INVALIDATION_CURRENCY")
+		Currency findByCode(String code);
+	}
+}
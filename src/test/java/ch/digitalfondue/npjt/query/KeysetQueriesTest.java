@@ -0,0 +1,181 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.query;
+
+import ch.digitalfondue.npjt.*;
+import ch.digitalfondue.npjt.ConstructorAnnotationRowMapper.Column;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+public class KeysetQueriesTest {
+
+	private static KeysetQueries kq;
+
+	@BeforeClass
+	public static void prepare() throws Exception {
+		DataSource dataSource = TestJdbcConfiguration.dataSource("keyset");
+		kq = QueryFactory.from(KeysetQueries.class, "HSQLDB", dataSource);
+		kq.createTable();
+		kq.createDayTable();
+		for (int i = 1; i <= 25; i++) {
+			kq.insert(i, i % 2 == 0 ? "EVEN" : "ODD");
+			kq.insertDay(LocalDate.of(2015, 1, i));
+		}
+	}
+
+	@Test
+	public void pages() {
+		Page<Event> page = kq.findAll(PageRequest.first(10));
+		Assert.assertEquals(10, page.getContent().size());
+		Assert.assertEquals(1, page.getContent().get(0).id);
+		Assert.assertEquals(10, page.getLastKey());
+		Assert.assertTrue(page.hasNext());
+
+		page = kq.findAll(PageRequest.after(page.getLastKey(), 10));
+		Assert.assertEquals(11, page.getContent().get(0).id);
+
+		page = page.next();
+		Assert.assertEquals(5, page.getContent().size());
+		Assert.assertEquals(25, page.getLastKey());
+		Assert.assertFalse(page.hasNext());
+	}
+
+	@Test
+	public void filteredDescendingPages() {
+		Page<Integer> page = kq.findIdsByType("EVEN", PageRequest.first(5));
+		Assert.assertEquals(24, page.getContent().get(0).intValue());
+		page = page.next();
+		Assert.assertEquals(14, page.getContent().get(0).intValue());
+		page = page.next();
+		Assert.assertEquals(2, page.getContent().size());
+		Assert.assertFalse(page.hasNext());
+	}
+
+	@Test
+	public void iterateAllWithPrefetch() {
+		List<Integer> ids = new ArrayList<>();
+		Iterator<Event> it = kq.findAllPrefetch(PageRequest.first(4)).iterateAll();
+		while (it.hasNext()) {
+			ids.add(it.next().id);
+		}
+		Assert.assertEquals(25, ids.size());
+		for (int i = 0; i < ids.size(); i++) {
+			Assert.assertEquals(i + 1, ids.get(i).intValue());
+		}
+	}
+
+	@Test
+	public void emptyPage() {
+		Page<Integer> page = kq.findIdsByType("NONE", PageRequest.first(5));
+		Assert.assertTrue(page.getContent().isEmpty());
+		Assert.assertFalse(page.hasNext());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void queryWithOrderByIsRejected() {
+		kq.findAllOrdered(PageRequest.first(5));
+	}
+
+	@Test
+	public void orderByInSubqueryOrLiteralIsAccepted() {
+		Assert.assertEquals(5, kq.findByLatestType(PageRequest.first(5)).getContent().size());
+	}
+
+	@Test
+	public void lastKeyIsBoundWithTheParameterConverters() {
+		Page<Day> page = kq.findDays(PageRequest.first(10));
+		Assert.assertEquals(LocalDate.of(2015, 1, 10), page.getLastKey());
+
+		page = kq.findDays(PageRequest.after(page.getLastKey(), 10));
+		Assert.assertEquals(LocalDate.of(2015, 1, 11), page.getContent().get(0).day);
+
+		page = page.next();
+		Assert.assertEquals(5, page.getContent().size());
+		Assert.assertFalse(page.hasNext());
+	}
+
+	public static class Day {
+		final LocalDate day;
+
+		public Day(@Column("EVENT_DAY") LocalDate day) {
+			this.day = day;
+		}
+
+		public LocalDate getDay() {
+			return day;
+		}
+	}
+
+	public static class Event {
+		final int id;
+		final String type;
+
+		public Event(@Column("EVENT_ID") int id, @Column("EVENT_TYPE") String type) {
+			this.id = id;
+			this.type = type;
+		}
+
+		public int getId() {
+			return id;
+		}
+	}
+
+	public interface KeysetQueries {
+
+		@Query("CREATE TABLE LA_KEYSET (EVENT_ID INTEGER PRIMARY KEY NOT NULL, EVENT_TYPE VARCHAR(64) NOT NULL)")
+		void createTable();
+
+		@Query("INSERT INTO LA_KEYSET(EVENT_ID, EVENT_TYPE) VALUES(:id, :type)")
+		int insert(@Bind("id") int id, @Bind("type") String type);
+
+		@Query("CREATE TABLE LA_KEYSET_DAY (EVENT_DAY DATE PRIMARY KEY NOT NULL)")
+		void createDayTable();
+
+		@Query("INSERT INTO LA_KEYSET_DAY(EVENT_DAY) VALUES(:day)")
+		int insertDay(@Bind("day") LocalDate day);
+
+		@Keyset(column = "EVENT_DAY", property = "day")
+		@Query("SELECT * FROM LA_KEYSET_DAY")
+		Page<Day> findDays(PageRequest page);
+
+		@Keyset(column = "EVENT_ID", property = "id")
+		@Query("SELECT * FROM LA_KEYSET")
+		Page<Event> findAll(PageRequest page);
+
+		@Keyset(column = "EVENT_ID", property = "id", prefetch = true)
+		@Query("SELECT * FROM LA_KEYSET")
+		Page<Event> findAllPrefetch(PageRequest page);
+
+		@Keyset(column = "EVENT_ID")
+		@Query("SELECT EVENT_ID FROM LA_KEYSET ORDER BY EVENT_TYPE")
+		Page<Integer> findAllOrdered(PageRequest page);
+
+		@Keyset(column = "EVENT_ID")
+		@Query("SELECT EVENT_ID FROM LA_KEYSET WHERE EVENT_TYPE <> 'ORDER BY' AND EVENT_TYPE = (SELECT EVENT_TYPE FROM LA_KEYSET ORDER BY EVENT_ID DESC LIMIT 1)")
+		Page<Integer> findByLatestType(PageRequest page);
+
+		@Keyset(column = "EVENT_ID", descending = true)
+		@Query("SELECT EVENT_ID FROM LA_KEYSET WHERE EVENT_TYPE = :type")
+		Page<Integer> findIdsByType(@Bind("type") String type, PageRequest page);
+	}
+}
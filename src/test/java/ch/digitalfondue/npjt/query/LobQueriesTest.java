@@ -0,0 +1,161 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.query;
+
+import ch.digitalfondue.npjt.*;
+import ch.digitalfondue.npjt.mapper.LobMapper;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.FileCopyUtils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Transactional
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {TestJdbcConfiguration.class, QueryScannerConfiguration.class})
+public class LobQueriesTest {
+
+	private static final int SIZE = 200_000;
+
+	@Autowired
+	LobQueries lq;
+
+	@Before
+	public void prepare() {
+		lq.createTable();
+	}
+
+	private static byte[] content(int size) {
+		byte[] content = new byte[size];
+		for (int i = 0; i < size; i++) {
+			content[i] = (byte) i;
+		}
+		return content;
+	}
+
+	@Test
+	public void binaryStream() throws IOException {
+		byte[] content = content(SIZE);
+		Assert.assertEquals(1, lq.insert("stream", new ByteArrayInputStream(content), new StringReader("text")));
+
+		ByteBuffer buffer = lq.findData("stream");
+		Assert.assertTrue(buffer.isReadOnly());
+		Assert.assertEquals(SIZE, buffer.remaining());
+		byte[] read = new byte[SIZE];
+		buffer.get(read);
+		Assert.assertArrayEquals(content, read);
+
+		List<byte[]> streamed = new ArrayList<>();
+		lq.streamData("stream", in -> {
+			try {
+				streamed.add(FileCopyUtils.copyToByteArray(in));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+		Assert.assertEquals(1, streamed.size());
+		Assert.assertArrayEquals(content, streamed.get(0));
+	}
+
+	@Test
+	public void byteBufferAndReader() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 10_000; i++) {
+			sb.append("line ").append(i).append('\n');
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(content(1000));
+		buffer.position(10);
+		Assert.assertEquals(1, lq.insert("buffer", buffer, new StringReader(sb.toString())));
+		Assert.assertEquals(10, buffer.position());
+		Assert.assertEquals(990, lq.findData("buffer").remaining());
+
+		List<LobEntry> entries = new ArrayList<>();
+		lq.streamEntries("buffer", e -> {
+			try {
+				Assert.assertEquals(sb.toString(), FileCopyUtils.copyToString(e.text));
+				entries.add(e);
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		});
+		Assert.assertEquals(1, entries.size());
+		Assert.assertEquals("buffer", entries.get(0).key);
+	}
+
+	@Test
+	public void streamsWithLength() {
+		byte[] content = content(500);
+		Assert.assertEquals(1, lq.insert("length", new LobMapper.Stream(new ByteArrayInputStream(content), content.length),
+				new LobMapper.CharacterStream(new StringReader("text"), 4)));
+		ByteBuffer buffer = lq.findData("length");
+		byte[] read = new byte[buffer.remaining()];
+		buffer.get(read);
+		Assert.assertArrayEquals(content, read);
+	}
+
+	@Test
+	public void nullValues() {
+		Assert.assertEquals(1, lq.insert("null", (InputStream) null, null));
+		Assert.assertNull(lq.findData("null"));
+	}
+
+	public static class LobEntry {
+		final String key;
+		final Reader text;
+
+		public LobEntry(@ConstructorAnnotationRowMapper.Column("LOB_KEY") String key,
+						@ConstructorAnnotationRowMapper.Column("LOB_TEXT") Reader text) {
+			this.key = key;
+			this.text = text;
+		}
+	}
+
+	@QueryRepository
+	public interface LobQueries {
+
+		@Query("CREATE TABLE IF NOT EXISTS LA_LOB (LOB_KEY VARCHAR(64) PRIMARY KEY NOT NULL, LOB_DATA BLOB, LOB_TEXT CLOB)")
+		void createTable();
+
+		@Query("INSERT INTO LA_LOB(LOB_KEY, LOB_DATA, LOB_TEXT) VALUES(:key, :data, :text)")
+		int insert(@Bind("key") String key, @Bind("data") InputStream data, @Bind("text") Reader text);
+
+		@Query("INSERT INTO LA_LOB(LOB_KEY, LOB_DATA, LOB_TEXT) VALUES(:key, :data, :text)")
+		int insert(@Bind("key") String key, @Bind("data") ByteBuffer data, @Bind("text") Reader text);
+
+		@Query("INSERT INTO LA_LOB(LOB_KEY, LOB_DATA, LOB_TEXT) VALUES(:key, :data, :text)")
+		int insert(@Bind("key") String key, @Bind("data") LobMapper.Stream data, @Bind("text") LobMapper.CharacterStream text);
+
+		@Query("SELECT LOB_DATA FROM LA_LOB WHERE LOB_KEY = :key")
+		ByteBuffer findData(@Bind("key") String key);
+
+		@Query("SELECT LOB_DATA FROM LA_LOB WHERE LOB_KEY = :key")
+		void streamData(@Bind("key") String key, @ResultConsumer Consumer<InputStream> consumer);
+
+		@Query("SELECT LOB_KEY, LOB_TEXT FROM LA_LOB WHERE LOB_KEY = :key")
+		void streamEntries(@Bind("key") String key, @ResultConsumer Consumer<LobEntry> consumer);
+	}
+}
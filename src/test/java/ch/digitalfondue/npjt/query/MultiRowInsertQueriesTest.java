@@ -0,0 +1,165 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.query;
+
+import ch.digitalfondue.npjt.*;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class MultiRowInsertQueriesTest {
+
+	private static final List<String> preparedStatements = new CopyOnWriteArrayList<>();
+
+	private static DataSource dataSource;
+	private static TransactionTemplate tx;
+
+	@BeforeClass
+	public static void prepare() throws Exception {
+		dataSource = new RecordingDataSource(TestJdbcConfiguration.dataSource("multirowinsert"));
+		tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		QueryFactory.from(MultiRowInsertQueries.class, "HSQLDB", dataSource).createTable();
+	}
+
+	@Before
+	public void clear() {
+		preparedStatements.clear();
+	}
+
+	@Test
+	public void insertsAreRewrittenInChunks() {
+		MultiRowInsertQueries mq = QueryFactory.from(MultiRowInsertQueries.class, "HSQLDB", dataSource);
+		tx.execute(status -> {
+			for (int i = 0; i < 7; i++) {
+				mq.insert("CHUNK", "EVENT_" + i);
+			}
+			return null;
+		});
+		Assert.assertEquals(7, mq.countByCategory("CHUNK"));
+		Assert.assertEquals(1, mq.countByEvent("EVENT_6"));
+		Assert.assertTrue(preparedStatements.contains("INSERT INTO LA_MULTI_ROW(AUDIT_CATEGORY, AUDIT_EVENT, AUDIT_NOTE) VALUES (?, ?, 'a:b'), (?, ?, 'a:b'), (?, ?, 'a:b')"));
+		// the remaining row is inserted with the original query
+		Assert.assertTrue(preparedStatements.contains("INSERT INTO LA_MULTI_ROW(AUDIT_CATEGORY, AUDIT_EVENT, AUDIT_NOTE) VALUES (?, ?, 'a:b')"));
+	}
+
+	@Test
+	public void rewriteIsAppliedOnlyForTheSelectedDb() {
+		MultiRowInsertQueries mq = QueryFactory.from(MultiRowInsertQueries.class, "HSQLDB", dataSource);
+		tx.execute(status -> {
+			for (int i = 0; i < 4; i++) {
+				mq.insertOnlyPgsql("OTHER_DB", "EVENT_" + i);
+			}
+			return null;
+		});
+		Assert.assertEquals(4, mq.countByCategory("OTHER_DB"));
+		for (String sql : preparedStatements) {
+			Assert.assertFalse(sql.contains("), ("));
+		}
+	}
+
+	@Test
+	public void beanPropertiesAreRewritten() {
+		MultiRowInsertQueries mq = QueryFactory.from(MultiRowInsertQueries.class, "HSQLDB", dataSource);
+		tx.execute(status -> {
+			for (int i = 0; i < 4; i++) {
+				mq.insertBean(new Audit("BEAN", "BEAN_EVENT_" + i));
+			}
+			return null;
+		});
+		Assert.assertEquals(4, mq.countByCategory("BEAN"));
+		Assert.assertEquals(1, mq.countByEvent("BEAN_EVENT_3"));
+		Assert.assertTrue(preparedStatements.contains("INSERT INTO LA_MULTI_ROW(AUDIT_CATEGORY, AUDIT_EVENT, AUDIT_NOTE) VALUES (?, ?, 'bean'), (?, ?, 'bean')"));
+	}
+
+	public static class Audit {
+		private final String category;
+		private final String event;
+
+		Audit(String category, String event) {
+			this.category = category;
+			this.event = event;
+		}
+
+		public String getCategory() {
+			return category;
+		}
+
+		public String getEvent() {
+			return event;
+		}
+	}
+
+	public interface MultiRowInsertQueries {
+
+		@Query("CREATE TABLE LA_MULTI_ROW (AUDIT_CATEGORY VARCHAR(64) NOT NULL, AUDIT_EVENT VARCHAR(255) NOT NULL, AUDIT_NOTE VARCHAR(255) NOT NULL)")
+		void createTable();
+
+		@WriteBehind
+		@MultiRowInsert(chunkSize = 3)
+		@Query("INSERT INTO LA_MULTI_ROW(AUDIT_CATEGORY, AUDIT_EVENT, AUDIT_NOTE) VALUES (:category, :event, 'a:b')")
+		void insert(@Bind("category") String category, @Bind("event") String event);
+
+		@WriteBehind
+		@MultiRowInsert(chunkSize = 2)
+		@Query("INSERT INTO LA_MULTI_ROW(AUDIT_CATEGORY, AUDIT_EVENT, AUDIT_NOTE) VALUES (:a.category, :a.event, 'bean')")
+		void insertBean(@BindBean("a") Audit audit);
+
+		@WriteBehind
+		@MultiRowInsert(chunkSize = 2, db = "PGSQL")
+		@Query("INSERT INTO LA_MULTI_ROW(AUDIT_CATEGORY, AUDIT_EVENT, AUDIT_NOTE) VALUES (:category, :event, 'a:b')")
+		void insertOnlyPgsql(@Bind("category") String category, @Bind("event") String event);
+
+		@Query("SELECT COUNT(*) FROM LA_MULTI_ROW WHERE AUDIT_CATEGORY = :category")
+		int countByCategory(@Bind("category") String category);
+
+		@Query("SELECT COUNT(*) FROM LA_MULTI_ROW WHERE AUDIT_EVENT = :event")
+		int countByEvent(@Bind("event") String event);
+	}
+
+	private static class RecordingDataSource extends DelegatingDataSource {
+
+		RecordingDataSource(DataSource dataSource) {
+			super(dataSource);
+		}
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			Connection connection = super.getConnection();
+			return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { Connection.class }, (proxy, method, args) -> {
+				if (method.getName().equals("prepareStatement")) {
+					preparedStatements.add((String) args[0]);
+				}
+				try {
+					return method.invoke(connection, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+			});
+		}
+	}
+}
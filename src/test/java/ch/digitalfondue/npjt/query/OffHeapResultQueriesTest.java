@@ -0,0 +1,105 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.query;
+
+import ch.digitalfondue.npjt.*;
+import ch.digitalfondue.npjt.ConstructorAnnotationRowMapper.Column;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+@Transactional
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {TestJdbcConfiguration.class, QueryScannerConfiguration.class})
+public class OffHeapResultQueriesTest {
+
+	@Autowired
+	OffHeapQueries oq;
+
+	@Before
+	public void prepare() {
+		oq.createTable();
+		for (int i = 0; i < 3000; i++) {
+			oq.insert(i, i / 2.0, "CATEGORY_" + (i % 3), i % 2 == 0 ? Status.OPEN : Status.CLOSED, i % 100 == 0 ? null : i);
+		}
+	}
+
+	@Test
+	public void readColumns() {
+		try (OffHeapResult<Measure> res = oq.findAll()) {
+			Assert.assertEquals(3000, res.size());
+			Assert.assertEquals(2999L, res.getLong("MEASURE_ID", 2999));
+			Assert.assertEquals(1000.5, res.getDouble("measure_value", 2001), 0.0001);
+			Assert.assertEquals("CATEGORY_2", res.getString("MEASURE_CATEGORY", 5));
+			Assert.assertEquals(3, res.getDictionary("MEASURE_CATEGORY").size());
+			Assert.assertEquals("CLOSED", res.getString("MEASURE_STATUS", 1));
+			Assert.assertTrue(res.isNull("MEASURE_COUNT", 100));
+			Assert.assertEquals(101, res.getInt("MEASURE_COUNT", 101));
+
+			Measure m = res.get(100);
+			Assert.assertEquals(100L, m.id);
+			Assert.assertEquals(Status.OPEN, m.status);
+			Assert.assertNull(m.count);
+			Assert.assertEquals("CATEGORY_1", m.category);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void wrongColumnType() {
+		try (OffHeapResult<Measure> res = oq.findAll()) {
+			res.getDouble("MEASURE_ID", 0);
+		}
+	}
+
+	public enum Status {
+		OPEN, CLOSED
+	}
+
+	public static class Measure {
+		final long id;
+		final double value;
+		final String category;
+		final Status status;
+		final Integer count;
+
+		public Measure(@Column("MEASURE_ID") long id, @Column("MEASURE_VALUE") double value, @Column("MEASURE_CATEGORY") String category,
+					   @Column("MEASURE_STATUS") Status status, @Column("MEASURE_COUNT") Integer count) {
+			this.id = id;
+			this.value = value;
+			this.category = category;
+			this.status = status;
+			this.count = count;
+		}
+	}
+
+	@QueryRepository
+	public interface OffHeapQueries {
+
+		@Query("CREATE TABLE IF NOT EXISTS LA_OFF_HEAP (MEASURE_ID BIGINT PRIMARY KEY NOT NULL, MEASURE_VALUE DOUBLE NOT NULL, MEASURE_CATEGORY VARCHAR(64) NOT NULL, MEASURE_STATUS VARCHAR(16) NOT NULL, MEASURE_COUNT INTEGER)")
+		void createTable();
+
+		@Query("INSERT INTO LA_OFF_HEAP(MEASURE_ID, MEASURE_VALUE, MEASURE_CATEGORY, MEASURE_STATUS, MEASURE_COUNT) VALUES(:id, :value, :category, :status, :count)")
+		int insert(@Bind("id") long id, @Bind("value") double value, @Bind("category") String category, @Bind("status") Status status, @Bind("count") Integer count);
+
+		@Query("SELECT * FROM LA_OFF_HEAP ORDER BY MEASURE_ID")
+		OffHeapResult<Measure> findAll();
+	}
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.query;
+
+import ch.digitalfondue.npjt.*;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+@Transactional
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {TestJdbcConfiguration.class, QueryScannerConfiguration.class})
+public class PrimitiveArrayQueriesTest {
+
+	@Autowired
+	PrimitiveQueries pq;
+
+	@Before
+	public void prepare() {
+		pq.createTable();
+		for (int i = 1; i <= 100; i++) {
+			pq.insert(i, i * 1.5, i % 10 == 0 ? null : "LABEL_" + i);
+		}
+	}
+
+	@Test
+	public void primitiveArrays() {
+		long[] ids = pq.ids();
+		Assert.assertEquals(100, ids.length);
+		Assert.assertEquals(100L, ids[99]);
+		Assert.assertArrayEquals(new int[] { 1, 2, 3 }, pq.idsLowerThan(4));
+		Assert.assertEquals(150.0, pq.values()[99], 0.0001);
+		Assert.assertEquals(0, pq.idsLowerThan(0).length);
+		Assert.assertTrue(Arrays.equals(new boolean[] { true, false }, pq.flags()));
+	}
+
+	@Test
+	public void columnar() {
+		ColumnarResult res = pq.columnar();
+		Assert.assertEquals(100, res.size());
+		Assert.assertEquals(Arrays.asList("ENTRY_ID", "ENTRY_VALUE", "ENTRY_LABEL"), res.getColumnNames());
+		Assert.assertEquals(50L, res.getLongs("entry_id")[49]);
+		Assert.assertEquals(75.0, res.getDoubles("ENTRY_VALUE")[49], 0.0001);
+		Assert.assertEquals("LABEL_1", res.getObjects("ENTRY_LABEL")[0]);
+		Assert.assertTrue(res.isNull("ENTRY_LABEL", 9));
+		Assert.assertFalse(res.isNull("ENTRY_LABEL", 8));
+	}
+
+	@Test
+	public void columnarDecimals() {
+		ColumnarResult res = pq.columnarDecimals();
+		Assert.assertEquals(12345678901234567L, res.getLongs("AMOUNT")[0]);
+		Assert.assertEquals(new BigDecimal("0.10"), res.getObjects("PRICE")[0]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void columnarWrongType() {
+		pq.columnar().getDoubles("ENTRY_ID");
+	}
+
+	@QueryRepository
+	public interface PrimitiveQueries {
+
+		@Query("CREATE TABLE IF NOT EXISTS LA_PRIMITIVE (ENTRY_ID BIGINT PRIMARY KEY NOT NULL, ENTRY_VALUE DOUBLE NOT NULL, ENTRY_LABEL VARCHAR(64))")
+		void createTable();
+
+		@Query("INSERT INTO LA_PRIMITIVE(ENTRY_ID, ENTRY_VALUE, ENTRY_LABEL) VALUES(:id, :value, :label)")
+		int insert(@Bind("id") long id, @Bind("value") double value, @Bind("label") String label);
+
+		@Query("SELECT ENTRY_ID FROM LA_PRIMITIVE ORDER BY ENTRY_ID")
+		long[] ids();
+
+		@Query("SELECT ENTRY_ID FROM LA_PRIMITIVE WHERE ENTRY_ID < :max ORDER BY ENTRY_ID")
+		int[] idsLowerThan(@Bind("max") int max);
+
+		@Query("SELECT ENTRY_VALUE FROM LA_PRIMITIVE ORDER BY ENTRY_ID")
+		double[] values();
+
+		@Query("SELECT ENTRY_LABEL IS NOT NULL FROM LA_PRIMITIVE WHERE ENTRY_ID IN (9, 10) ORDER BY ENTRY_ID")
+		boolean[] flags();
+
+		@Query("SELECT ENTRY_ID, ENTRY_VALUE, ENTRY_LABEL FROM LA_PRIMITIVE ORDER BY ENTRY_ID")
+		ColumnarResult columnar();
+
+		@Query("SELECT CAST(12345678901234567 AS DECIMAL(18, 0)) AMOUNT, CAST(0.1 AS DECIMAL(10, 2)) PRICE FROM (VALUES(0))")
+		ColumnarResult columnarDecimals();
+	}
+}
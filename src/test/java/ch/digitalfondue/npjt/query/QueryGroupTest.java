@@ -0,0 +1,141 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.query;
+
+import ch.digitalfondue.npjt.*;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class QueryGroupTest {
+
+	private static GroupQueries gq;
+	private static GroupQueries injected;
+
+	@BeforeClass
+	public static void prepare() throws Exception {
+		DataSource dataSource = TestJdbcConfiguration.dataSource("querygroup");
+		gq = QueryFactory.from(GroupQueries.class, "HSQLDB", dataSource);
+		QueryFactory<GroupQueries> qf = new QueryFactory<>(GroupQueries.class, "HSQLDB");
+		qf.setJdbc(new NamedParameterJdbcTemplate(dataSource));
+		injected = qf.getObject();
+		gq.createTable();
+		gq.insertValue("KEY_1", "VALUE_1");
+		gq.insertValue("KEY_2", "VALUE_2");
+	}
+
+	@Test
+	public void callsAreExecutedConcurrently() {
+		try (QueryGroup group = QueryGroup.withDeadline(Duration.ofSeconds(10))) {
+			CompletableFuture<String> v1 = group.submit(() -> gq.findValue("KEY_1"));
+			CompletableFuture<String> v2 = group.submit(() -> gq.findValue("KEY_2"));
+			CompletableFuture<List<String>> keys = group.submit(() -> gq.findAllKeys());
+			group.join();
+			Assert.assertEquals("VALUE_1", v1.join());
+			Assert.assertEquals("VALUE_2", v2.join());
+			Assert.assertEquals(2, keys.join().size());
+		}
+	}
+
+	@Test
+	public void failFast() throws Exception {
+		CountDownLatch failed = new CountDownLatch(1);
+		try (QueryGroup group = QueryGroup.withDeadline(Duration.ofSeconds(10))) {
+			group.submit(() -> gq.findValue("KEY_MISSING"));
+			CompletableFuture<String> slow = group.submit(() -> {
+				failed.await(10, TimeUnit.SECONDS);
+				return gq.findValue("KEY_1");
+			});
+			try {
+				group.join();
+				Assert.fail();
+			} catch (RuntimeException e) {
+				failed.countDown();
+				Assert.assertTrue(e instanceof org.springframework.dao.EmptyResultDataAccessException);
+			}
+			try {
+				slow.get(10, TimeUnit.SECONDS);
+				Assert.fail();
+			} catch (CancellationException e) {
+				// expected: the group has been cancelled after the first failure
+			}
+		}
+	}
+
+	@Test(expected = QueryTimeoutException.class)
+	public void deadline() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		try (QueryGroup group = QueryGroup.withDeadline(Duration.ofMillis(50))) {
+			group.submit(() -> {
+				release.await(10, TimeUnit.SECONDS);
+				return gq.findValue("KEY_1");
+			});
+			group.join();
+		} finally {
+			release.countDown();
+		}
+	}
+
+	@Test
+	public void statementsOfAnInjectedTemplateAreTracked() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<String> late;
+		try (QueryGroup group = QueryGroup.withDeadline(Duration.ofMillis(50))) {
+			late = group.submit(() -> {
+				release.await(10, TimeUnit.SECONDS);
+				return injected.findValue("KEY_1");
+			});
+			try {
+				group.join();
+				Assert.fail();
+			} catch (QueryTimeoutException e) {
+				// expected
+			}
+		}
+		release.countDown();
+		try {
+			late.get(10, TimeUnit.SECONDS);
+			Assert.fail();
+		} catch (CancellationException e) {
+			// the statement of the late call has been refused
+		}
+	}
+
+	public interface GroupQueries {
+
+		@Query("CREATE TABLE LA_QUERY_GROUP (CONF_KEY VARCHAR(64) PRIMARY KEY NOT NULL, CONF_VALUE VARCHAR(255) NOT NULL)")
+		void createTable();
+
+		@Query("INSERT INTO LA_QUERY_GROUP(CONF_KEY, CONF_VALUE) VALUES(:key, :value)")
+		int insertValue(@Bind("key") String key, @Bind("value") String value);
+
+		@Query("SELECT CONF_VALUE FROM LA_QUERY_GROUP WHERE CONF_KEY = :key")
+		String findValue(@Bind("key") String key);
+
+		@Query("SELECT CONF_KEY FROM LA_QUERY_GROUP")
+		List<String> findAllKeys();
+	}
+}
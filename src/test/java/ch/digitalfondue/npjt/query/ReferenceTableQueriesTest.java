@@ -0,0 +1,159 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.query;
+
+import ch.digitalfondue.npjt.*;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+public class ReferenceTableQueriesTest {
+
+	private static final Semaphore REFRESHED = new Semaphore(0);
+	private static DataSource dataSource;
+	private static ReferenceQueries rq;
+
+	@BeforeClass
+	public static void prepare() throws Exception {
+		dataSource = TestJdbcConfiguration.dataSource("referencetable");
+		// the snapshot is loaded with another connection: it must not wait for the locks of the caller's transaction
+		new JdbcTemplate(dataSource).execute("SET DATABASE TRANSACTION CONTROL MVCC");
+		QueryFactory<ReferenceQueries> qf = new QueryFactory<>(ReferenceQueries.class, "HSQLDB");
+		qf.setDataSource(dataSource);
+		// the refreshes are executed by the calling thread
+		qf.setReferenceRefreshExecutor(refresh -> {
+			refresh.run();
+			REFRESHED.release();
+		});
+		rq = qf.getObject();
+		rq.createTable();
+		rq.insert("CHF", "Swiss franc", 1);
+		rq.insert("EUR", "Euro", 1);
+		rq.insert("JPY", "Yen", 1);
+	}
+
+	// call the method until the refresh interval is elapsed and a refresh is executed
+	private static void refresh(Runnable call) throws InterruptedException {
+		REFRESHED.drainPermits();
+		int calls = 0;
+		while (!REFRESHED.tryAcquire(50, TimeUnit.MILLISECONDS) && calls++ < 200) {
+			call.run();
+		}
+	}
+
+	@Test
+	public void servedFromMemory() {
+		Currency chf = rq.findByCode("CHF");
+		Assert.assertEquals("Swiss franc", chf.name);
+		Assert.assertSame(chf, rq.findByCode("CHF"));
+		Assert.assertNull(rq.findByCode("XXX"));
+		Assert.assertEquals("Euro", rq.findOptionalByCode("EUR").get().name);
+		Assert.assertFalse(rq.findOptionalByCode("XXX").isPresent());
+
+		// never refreshed
+		rq.update("EUR", "Euro (changed)", 2);
+		Assert.assertEquals("Euro", rq.findOptionalByCode("EUR").get().name);
+		rq.update("EUR", "Euro", 1);
+	}
+
+	@Test
+	public void incrementalRefresh() throws InterruptedException {
+		Assert.assertEquals(3, rq.findAll().size());
+		rq.insert("USD", "US dollar", 2);
+		rq.update("JPY", "Japanese yen", 2);
+
+		refresh(rq::findAll);
+		List<Currency> all = rq.findAll();
+		Assert.assertEquals(4, all.size());
+		Assert.assertEquals("Japanese yen", all.get(2).name);
+		Assert.assertEquals("USD", all.get(3).code);
+	}
+
+	@Test
+	public void fullReloadRemovesDeletedRows() throws InterruptedException {
+		rq.insert("GBP", "Pound", 1);
+		Assert.assertTrue(rq.findWithFullReload("GBP").isPresent());
+		rq.delete("GBP");
+
+		refresh(() -> rq.findWithFullReload("GBP"));
+		Assert.assertFalse(rq.findWithFullReload("GBP").isPresent());
+	}
+
+	@Test
+	public void uncommittedRowsAreNotLoaded() {
+		ReferenceQueries other = QueryFactory.from(ReferenceQueries.class, "HSQLDB", dataSource);
+		TransactionTemplate tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		tx.execute(status -> {
+			other.insert("XXX", "Rolled back", 1);
+			Assert.assertNull(other.findByCode("XXX"));
+			status.setRollbackOnly();
+			return null;
+		});
+		Assert.assertNull(other.findByCode("XXX"));
+		Assert.assertEquals("Swiss franc", other.findByCode("CHF").name);
+	}
+
+	public static class Currency {
+		final String code;
+		final String name;
+
+		public Currency(@ConstructorAnnotationRowMapper.Column("CODE") String code,
+						@ConstructorAnnotationRowMapper.Column("NAME") String name) {
+			this.code = code;
+			this.name = name;
+		}
+	}
+
+	public interface ReferenceQueries {
+
+		@Query("CREATE TABLE LA_CURRENCY (CODE CHAR(3) PRIMARY KEY NOT NULL, NAME VARCHAR(64) NOT NULL, VERSION BIGINT NOT NULL)")
+		void createTable();
+
+		@Query("INSERT INTO LA_CURRENCY(CODE, NAME, VERSION) VALUES(:code, :name, :version)")
+		int insert(@Bind("code") String code, @Bind("name") String name, @Bind("version") long version);
+
+		@Query("UPDATE LA_CURRENCY SET NAME = :name, VERSION = :version WHERE CODE = :code")
+		int update(@Bind("code") String code, @Bind("name") String name, @Bind("version") long version);
+
+		@Query("DELETE FROM LA_CURRENCY WHERE CODE = :code")
+		int delete(@Bind("code") String code);
+
+		@ReferenceTable(key = "CODE", refreshSeconds = 0)
+		@Query("SELECT * FROM LA_CURRENCY")
+		Currency findByCode(String code);
+
+		@ReferenceTable(key = "CODE", version = "VERSION", refreshSeconds = 1, fullReloadSeconds = 1)
+		@Query("SELECT * FROM LA_CURRENCY")
+		Optional<Currency> findWithFullReload(String code);
+
+		@ReferenceTable(key = "CODE", refreshSeconds = 0)
+		@Query("SELECT * FROM LA_CURRENCY")
+		Optional<Currency> findOptionalByCode(String code);
+
+		@ReferenceTable(key = "CODE", version = "VERSION", refreshSeconds = 1)
+		@Query("SELECT * FROM LA_CURRENCY ORDER BY CODE")
+		List<Currency> findAll();
+	}
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.query;
+
+import ch.digitalfondue.npjt.*;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+public class ReplicaQueriesTest {
+
+	@Test
+	public void readOnlyQueriesAreRoutedToTheReplicas() throws Exception {
+		DataSource primary = TestJdbcConfiguration.dataSource("replicaTestPrimary");
+		DataSource replica1 = TestJdbcConfiguration.dataSource("replicaTestReplica1");
+		DataSource replica2 = TestJdbcConfiguration.dataSource("replicaTestReplica2");
+
+		QueryFactory.from(ReplicaQueries.class, "HSQLDB", replica1).createTable();
+		QueryFactory.from(ReplicaQueries.class, "HSQLDB", replica1).insertValue("SOURCE", "REPLICA1");
+		QueryFactory.from(ReplicaQueries.class, "HSQLDB", replica2).createTable();
+		QueryFactory.from(ReplicaQueries.class, "HSQLDB", replica2).insertValue("SOURCE", "REPLICA2");
+
+		QueryFactory<ReplicaQueries> qf = new QueryFactory<>(ReplicaQueries.class, "HSQLDB");
+		qf.setDataSource(primary);
+		qf.setReplicaDataSources(Arrays.asList(replica1, replica2));
+		ReplicaQueries rq = qf.getObject();
+
+		rq.createTable();
+		Assert.assertEquals(1, rq.insertValue("SOURCE", "PRIMARY"));
+
+		List<String> sources = Arrays.asList(rq.findValue("SOURCE"), rq.findValue("SOURCE"));
+		Assert.assertTrue(sources.contains("REPLICA1"));
+		Assert.assertTrue(sources.contains("REPLICA2"));
+
+		Assert.assertEquals("PRIMARY", rq.findValueModifying("SOURCE"));
+
+		TransactionTemplate tx = new TransactionTemplate(new DataSourceTransactionManager(primary));
+		Assert.assertEquals("PRIMARY", tx.execute(status -> rq.findValue("SOURCE")));
+	}
+
+	@Test
+	public void leastOutstandingBalancing() throws Exception {
+		DataSource primary = TestJdbcConfiguration.dataSource("replicaTestLeastPrimary");
+		DataSource replica1 = TestJdbcConfiguration.dataSource("replicaTestLeastReplica1");
+		DataSource replica2 = TestJdbcConfiguration.dataSource("replicaTestLeastReplica2");
+		QueryFactory.from(ReplicaQueries.class, "HSQLDB", replica1).createTable();
+		QueryFactory.from(ReplicaQueries.class, "HSQLDB", replica1).insertValue("SOURCE", "REPLICA1");
+		QueryFactory.from(ReplicaQueries.class, "HSQLDB", replica2).createTable();
+		QueryFactory.from(ReplicaQueries.class, "HSQLDB", replica2).insertValue("SOURCE", "REPLICA2");
+
+		QueryFactory<ReplicaQueries> qf = new QueryFactory<>(ReplicaQueries.class, "HSQLDB");
+		qf.setDataSource(primary);
+		qf.setReplicaDataSources(Arrays.asList(replica1, replica2));
+		qf.setReplicaBalancing(ReplicaBalancing.LEAST_OUTSTANDING);
+		ReplicaQueries rq = qf.getObject();
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			// hold a query on one of the replicas, all the other queries must use the other replica
+			Future<String> busy = executor.submit(() -> rq.findValueBlocking("SOURCE"));
+			Assert.assertTrue(BlockingRowMapper.ENTERED.await(10, TimeUnit.SECONDS));
+			String first = rq.findValue("SOURCE");
+			for (int i = 0; i < 5; i++) {
+				Assert.assertEquals(first, rq.findValue("SOURCE"));
+			}
+			BlockingRowMapper.RELEASE.countDown();
+			Assert.assertNotEquals(first, busy.get(10, TimeUnit.SECONDS));
+		} finally {
+			BlockingRowMapper.RELEASE.countDown();
+			executor.shutdownNow();
+		}
+	}
+
+	public static class BlockingRowMapper implements RowMapper<String> {
+
+		static final CountDownLatch ENTERED = new CountDownLatch(1);
+		static final CountDownLatch RELEASE = new CountDownLatch(1);
+
+		@Override
+		public String mapRow(ResultSet rs, int rowNum) throws SQLException {
+			ENTERED.countDown();
+			try {
+				RELEASE.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				throw new SQLException(e);
+			}
+			return rs.getString(1);
+		}
+	}
+
+	public interface ReplicaQueries {
+
+		@Query("CREATE TABLE LA_REPLICA (CONF_KEY VARCHAR(64) PRIMARY KEY NOT NULL, CONF_VALUE VARCHAR(255) NOT NULL)")
+		void createTable();
+
+		@Query("INSERT INTO LA_REPLICA(CONF_KEY, CONF_VALUE) VALUES(:key, :value)")
+		int insertValue(@Bind("key") String key, @Bind("value") String value);
+
+		@Query("SELECT CONF_VALUE FROM LA_REPLICA WHERE CONF_KEY = :key")
+		String findValue(@Bind("key") String key);
+
+		@Query(value = "SELECT CONF_VALUE FROM LA_REPLICA WHERE CONF_KEY = :key", mapper = BlockingRowMapper.class)
+		String findValueBlocking(@Bind("key") String key);
+
+		@Query(type = QueryType.MODIFYING_WITH_RETURN, value = "SELECT CONF_VALUE FROM LA_REPLICA WHERE CONF_KEY = :key")
+		String findValueModifying(@Bind("key") String key);
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.query;
+
+import ch.digitalfondue.npjt.*;
+import ch.digitalfondue.npjt.ConstructorAnnotationRowMapper.Column;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Transactional
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {TestJdbcConfiguration.class, QueryScannerConfiguration.class})
+public class ResultConsumerQueriesTest {
+
+	@Autowired
+	ResultConsumerQueries rq;
+
+	@Before
+	public void prepare() {
+		rq.createTable();
+		for (int i = 1; i <= 7; i++) {
+			rq.insert(i, "VALUE_" + i);
+		}
+	}
+
+	@Test
+	public void eachRow() {
+		List<Entry> entries = new ArrayList<>();
+		rq.forEach(entries::add);
+		Assert.assertEquals(7, entries.size());
+		Assert.assertEquals("VALUE_1", entries.get(0).value);
+
+		List<String> values = new ArrayList<>();
+		Assert.assertEquals(2, rq.forEachValue(3, values::add));
+		Assert.assertEquals("VALUE_6", values.get(0));
+	}
+
+	@Test
+	public void chunks() {
+		List<Integer> chunkSizes = new ArrayList<>();
+		Assert.assertEquals(7L, rq.forEachChunk(chunk -> chunkSizes.add(chunk.size())));
+		Assert.assertEquals(3, chunkSizes.size());
+		Assert.assertEquals(3, chunkSizes.get(0).intValue());
+		Assert.assertEquals(1, chunkSizes.get(2).intValue());
+	}
+
+	public static class Entry {
+		final int id;
+		final String value;
+
+		public Entry(@Column("ENTRY_ID") int id, @Column("ENTRY_VALUE") String value) {
+			this.id = id;
+			this.value = value;
+		}
+	}
+
+	@QueryRepository
+	public interface ResultConsumerQueries {
+
+		@Query("CREATE TABLE IF NOT EXISTS LA_RESULT_CONSUMER (ENTRY_ID INTEGER PRIMARY KEY NOT NULL, ENTRY_VALUE VARCHAR(64) NOT NULL)")
+		void createTable();
+
+		@Query("INSERT INTO LA_RESULT_CONSUMER(ENTRY_ID, ENTRY_VALUE) VALUES(:id, :value)")
+		int insert(@Bind("id") int id, @Bind("value") String value);
+
+		@Query("SELECT * FROM LA_RESULT_CONSUMER ORDER BY ENTRY_ID")
+		void forEach(@ResultConsumer Consumer<Entry> consumer);
+
+		@Query("SELECT ENTRY_VALUE FROM LA_RESULT_CONSUMER WHERE MOD(ENTRY_ID, :mod) = 0 ORDER BY ENTRY_ID DESC")
+		int forEachValue(@Bind("mod") int mod, @ResultConsumer Consumer<String> consumer);
+
+		@Query("SELECT * FROM LA_RESULT_CONSUMER ORDER BY ENTRY_ID")
+		long forEachChunk(@ResultConsumer(chunkSize = 3) Consumer<List<Entry>> consumer);
+	}
+}
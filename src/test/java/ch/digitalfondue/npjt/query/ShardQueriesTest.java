@@ -0,0 +1,188 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.query;
+
+import ch.digitalfondue.npjt.*;
+import ch.digitalfondue.npjt.ConstructorAnnotationRowMapper.Column;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.jdbc.BadSqlGrammarException;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+public class ShardQueriesTest {
+
+	@Test
+	public void shardKeyAndScatterGather() throws Exception {
+		DataSource shard0 = TestJdbcConfiguration.dataSource("shardTest0");
+		DataSource shard1 = TestJdbcConfiguration.dataSource("shardTest1");
+
+		QueryFactory<ShardQueries> qf = new QueryFactory<>(ShardQueries.class, "HSQLDB");
+		qf.setDataSource(TestJdbcConfiguration.dataSource("shardTestDefault"));
+		qf.setShardDataSources(Arrays.asList(shard0, shard1));
+		qf.setShardResolver((key, count) -> (int) (((Long) key) % count));
+		ShardQueries sq = qf.getObject();
+
+		QueryFactory.from(ShardQueries.class, "HSQLDB", shard0).createTable();
+		QueryFactory.from(ShardQueries.class, "HSQLDB", shard1).createTable();
+		for (long i = 0; i < 6; i++) {
+			Assert.assertEquals(1, sq.insert(i, "CUSTOMER_" + i));
+		}
+
+		Assert.assertEquals("CUSTOMER_3", sq.findById(3).name);
+		Assert.assertEquals(Arrays.asList(3L), QueryFactory.from(ShardQueries.class, "HSQLDB", shard1).findIdsByName("CUSTOMER_3"));
+		Assert.assertTrue(QueryFactory.from(ShardQueries.class, "HSQLDB", shard0).findIdsByName("CUSTOMER_3").isEmpty());
+
+		List<Customer> all = sq.findAll();
+		Assert.assertEquals(6, all.size());
+		for (int i = 0; i < 6; i++) {
+			Assert.assertEquals(i, all.get(i).id);
+		}
+
+		List<Customer> allDesc = sq.findAllDesc();
+		for (int i = 0; i < 6; i++) {
+			Assert.assertEquals(5 - i, allDesc.get(i).id);
+		}
+
+		Assert.assertEquals(6, sq.count());
+		Assert.assertTrue(sq.findByName("CUSTOMER_4").isPresent());
+		Assert.assertFalse(sq.findByName("CUSTOMER_42").isPresent());
+	}
+
+	@Test
+	public void scatterGatherSumsKeepThePrecision() throws Exception {
+		DataSource shard0 = TestJdbcConfiguration.dataSource("shardSumTest0");
+		DataSource shard1 = TestJdbcConfiguration.dataSource("shardSumTest1");
+
+		QueryFactory<SumQueries> qf = new QueryFactory<>(SumQueries.class, "HSQLDB");
+		qf.setDataSource(TestJdbcConfiguration.dataSource("shardSumTestDefault"));
+		qf.setShardDataSources(Arrays.asList(shard0, shard1));
+		qf.setShardResolver((key, count) -> (int) (((Long) key) % count));
+		SumQueries sq = qf.getObject();
+
+		QueryFactory.from(SumQueries.class, "HSQLDB", shard0).createTable();
+		QueryFactory.from(SumQueries.class, "HSQLDB", shard1).createTable();
+		// shard1 stays empty: its SUM is null
+		sq.insert(0, new BigDecimal("1.25"));
+		sq.insert(2, new BigDecimal("2.50"));
+
+		Assert.assertEquals(new BigDecimal("3.75"), sq.totalPrice());
+		Assert.assertEquals(3.75, sq.totalPriceAsDouble(), 0.0001);
+		Assert.assertNull(sq.totalPriceAbove(new BigDecimal("10")));
+
+		// a failure on one shard is rethrown
+		QueryFactory.from(SumQueries.class, "HSQLDB", shard1).dropTable();
+		try {
+			sq.totalPrice();
+			Assert.fail();
+		} catch (BadSqlGrammarException e) {
+			// expected
+		}
+	}
+
+	public interface SumQueries {
+
+		@Query("CREATE TABLE LA_SHARD_ORDER (ORDER_ID INTEGER PRIMARY KEY NOT NULL, PRICE DECIMAL(10, 2) NOT NULL)")
+		void createTable();
+
+		@Query("DROP TABLE LA_SHARD_ORDER")
+		void dropTable();
+
+		@Query("INSERT INTO LA_SHARD_ORDER(ORDER_ID, PRICE) VALUES(:id, :price)")
+		int insert(@Bind("id") @ShardKey long id, @Bind("price") BigDecimal price);
+
+		@ScatterGather
+		@Query("SELECT SUM(PRICE) FROM LA_SHARD_ORDER")
+		BigDecimal totalPrice();
+
+		@ScatterGather
+		@Query("SELECT SUM(PRICE) FROM LA_SHARD_ORDER")
+		double totalPriceAsDouble();
+
+		@ScatterGather
+		@Query("SELECT SUM(PRICE) FROM LA_SHARD_ORDER WHERE PRICE > :min")
+		BigDecimal totalPriceAbove(@Bind("min") BigDecimal min);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void scatterGatherWritesAreRejected() {
+		QueryFactory<InvalidScatterGatherQueries> qf = new QueryFactory<>(InvalidScatterGatherQueries.class, "HSQLDB");
+		qf.getObject();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void scatterGatherUnsupportedReturnTypeIsRejected() {
+		QueryFactory<UnsupportedScatterGatherQueries> qf = new QueryFactory<>(UnsupportedScatterGatherQueries.class, "HSQLDB");
+		qf.getObject();
+	}
+
+	public interface InvalidScatterGatherQueries {
+		@ScatterGather
+		@Query("UPDATE LA_SHARD SET CUSTOMER_NAME = :name")
+		int updateAll(@Bind("name") String name);
+	}
+
+	public interface UnsupportedScatterGatherQueries {
+		@ScatterGather
+		@Query("SELECT * FROM LA_SHARD WHERE CUSTOMER_ID = :id")
+		Customer findById(@Bind("id") long id);
+	}
+
+	public static class Customer {
+		final long id;
+		final String name;
+
+		public Customer(@Column("CUSTOMER_ID") long id, @Column("CUSTOMER_NAME") String name) {
+			this.id = id;
+			this.name = name;
+		}
+	}
+
+	public interface ShardQueries {
+
+		@Query("CREATE TABLE LA_SHARD (CUSTOMER_ID INTEGER PRIMARY KEY NOT NULL, CUSTOMER_NAME VARCHAR(255) NOT NULL)")
+		void createTable();
+
+		@Query("INSERT INTO LA_SHARD(CUSTOMER_ID, CUSTOMER_NAME) VALUES(:id, :name)")
+		int insert(@Bind("id") @ShardKey long id, @Bind("name") String name);
+
+		@Query("SELECT * FROM LA_SHARD WHERE CUSTOMER_ID = :id")
+		Customer findById(@Bind("id") @ShardKey long id);
+
+		@Query("SELECT CUSTOMER_ID FROM LA_SHARD WHERE CUSTOMER_NAME = :name")
+		List<Long> findIdsByName(@Bind("name") String name);
+
+		@ScatterGather
+		@Query("SELECT * FROM LA_SHARD WHERE CUSTOMER_NAME = :name")
+		Optional<Customer> findByName(@Bind("name") String name);
+
+		@ScatterGather(orderBy = "id")
+		@Query("SELECT * FROM LA_SHARD ORDER BY CUSTOMER_ID")
+		List<Customer> findAll();
+
+		@ScatterGather(orderBy = "id", descending = true)
+		@Query("SELECT * FROM LA_SHARD ORDER BY CUSTOMER_ID DESC")
+		List<Customer> findAllDesc();
+
+		@ScatterGather
+		@Query("SELECT COUNT(*) FROM LA_SHARD")
+		int count();
+	}
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.query;
+
+import ch.digitalfondue.npjt.*;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.jdbc.core.RowMapper;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SingleFlightQueriesTest {
+
+	private static final AtomicInteger MAPPED = new AtomicInteger();
+	private static final CountDownLatch MAPPING = new CountDownLatch(1);
+	private static final CountDownLatch FOLLOWERS = new CountDownLatch(4);
+	private static final List<Thread> FOLLOWER_THREADS = new CopyOnWriteArrayList<>();
+
+	// the query in flight completes only when the other callers are waiting for it
+	public static class BlockingRowMapper implements RowMapper<String> {
+		@Override
+		public String mapRow(ResultSet rs, int rowNum) throws SQLException {
+			if (MAPPED.incrementAndGet() > 1) {
+				return rs.getString(1);
+			}
+			MAPPING.countDown();
+			try {
+				Assert.assertTrue(FOLLOWERS.await(10, TimeUnit.SECONDS));
+				long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+				for (Thread follower : FOLLOWER_THREADS) {
+					while (follower.getState() != Thread.State.WAITING && System.nanoTime() - deadline < 0) {
+						Thread.sleep(1);
+					}
+				}
+			} catch (InterruptedException e) {
+				throw new SQLException(e);
+			}
+			return rs.getString(1);
+		}
+	}
+
+	@Test
+	public void concurrentIdenticalCallsShareOneQuery() throws Exception {
+		DataSource dataSource = TestJdbcConfiguration.dataSource("singleflight");
+
+		SingleFlightQueries sq = QueryFactory.from(SingleFlightQueries.class, "HSQLDB", dataSource);
+		sq.createTable();
+		sq.insertValue("MY_KEY", "MY_VALUE");
+
+		ExecutorService executor = Executors.newFixedThreadPool(5);
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			results.add(executor.submit(() -> sq.findValue("MY_KEY")));
+			Assert.assertTrue(MAPPING.await(10, TimeUnit.SECONDS));
+
+			// the other callers block on the query in flight
+			for (int i = 0; i < 4; i++) {
+				results.add(executor.submit(() -> {
+					FOLLOWER_THREADS.add(Thread.currentThread());
+					FOLLOWERS.countDown();
+					return sq.findValue("MY_KEY");
+				}));
+			}
+
+			for (Future<String> f : results) {
+				Assert.assertEquals("MY_VALUE", f.get(10, TimeUnit.SECONDS));
+			}
+			Assert.assertEquals(1, MAPPED.get());
+		} finally {
+			executor.shutdownNow();
+		}
+
+		// once completed, a new call execute a new query
+		Assert.assertEquals("MY_VALUE", sq.findValue("MY_KEY"));
+		Assert.assertEquals(2, MAPPED.get());
+
+		// the shared list can not be modified by one of the callers
+		List<String> values = sq.findValues();
+		Assert.assertEquals(1, values.size());
+		try {
+			values.add("OTHER");
+			Assert.fail();
+		} catch (UnsupportedOperationException e) {
+			Assert.assertEquals(1, sq.findValues().size());
+		}
+	}
+
+	public interface SingleFlightQueries {
+
+		@Query("CREATE TABLE LA_SINGLE_FLIGHT (CONF_KEY VARCHAR(64) PRIMARY KEY NOT NULL, CONF_VALUE VARCHAR(255) NOT NULL)")
+		void createTable();
+
+		@Query("INSERT INTO LA_SINGLE_FLIGHT(CONF_KEY, CONF_VALUE) VALUES(:key, :value)")
+		int insertValue(@Bind("key") String key, @Bind("value") String value);
+
+		@SingleFlight
+		@Query(value = "SELECT CONF_VALUE FROM LA_SINGLE_FLIGHT WHERE CONF_KEY = :key", mapper = BlockingRowMapper.class)
+		String findValue(@Bind("key") String key);
+
+		@SingleFlight
+		@Query("SELECT CONF_VALUE FROM LA_SINGLE_FLIGHT")
+		List<String> findValues();
+	}
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.query;
+
+import ch.digitalfondue.npjt.*;
+import ch.digitalfondue.npjt.ConstructorAnnotationRowMapper.Column;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Transactional
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {TestJdbcConfiguration.class, QueryScannerConfiguration.class})
+public class SpillToDiskQueriesTest {
+
+	@Autowired
+	SpillQueries sq;
+
+	@Before
+	public void prepare() {
+		sq.createTable();
+		for (int i = 0; i < 100; i++) {
+			sq.insert(i, "NAME_" + i, i % 2 == 0 ? Kind.A : Kind.B, i % 7 == 0 ? null : new BigDecimal(i + ".25"));
+		}
+	}
+
+	@Test
+	public void spilledRows() throws Exception {
+		List<Row> rows = sq.findAll();
+		Assert.assertEquals(100, rows.size());
+		for (int i = 0; i < 100; i++) {
+			Row row = rows.get(i);
+			Assert.assertEquals(i, row.id);
+			Assert.assertEquals("NAME_" + i, row.name);
+			Assert.assertEquals(i % 2 == 0 ? Kind.A : Kind.B, row.kind);
+			Assert.assertEquals(i % 7 == 0 ? null : new BigDecimal(i + ".25"), row.amount);
+		}
+		Assert.assertEquals(100, new ArrayList<>(rows).size());
+		((AutoCloseable) rows).close();
+	}
+
+	@Test
+	public void spilledEnumsAndDates() {
+		List<DatedRow> rows = sq.findAllDated();
+		Assert.assertEquals(100, rows.size());
+		for (int i = 0; i < 100; i++) {
+			DatedRow row = rows.get(i);
+			Assert.assertEquals(i % 2 == 0 ? Kind.A : Kind.B, row.kind);
+			Assert.assertEquals(LocalDate.of(2020, 1, 15), row.date);
+			Assert.assertEquals(LocalDateTime.of(2020, 1, 15, 10, 30, 15, 123_000_000), row.time);
+		}
+	}
+
+	@Test
+	public void spilledSimpleValues() {
+		List<String> names = sq.findAllNames();
+		Assert.assertEquals(100, names.size());
+		Assert.assertEquals("NAME_99", names.get(99));
+	}
+
+	@Test
+	public void smallResultIsNotSpilled() {
+		List<String> names = sq.findNamesLowerThan(5);
+		Assert.assertEquals(5, names.size());
+		Assert.assertFalse(names instanceof AutoCloseable);
+	}
+
+	@Test
+	public void resultAtTheInMemoryLimit() throws Exception {
+		List<String> names = sq.findNamesLowerThan(10);
+		Assert.assertEquals(10, names.size());
+		Assert.assertFalse(names instanceof AutoCloseable);
+
+		names = sq.findNamesLowerThan(11);
+		Assert.assertEquals(11, names.size());
+		Assert.assertEquals("NAME_10", names.get(10));
+		((AutoCloseable) names).close();
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void readOnly() {
+		sq.findAll().add(null);
+	}
+
+	public enum Kind {
+		A, B
+	}
+
+	public static class Row {
+		final int id;
+		final String name;
+		final Kind kind;
+		final BigDecimal amount;
+
+		public Row(@Column("ROW_ID") int id, @Column("ROW_NAME") String name, @Column("ROW_KIND") Kind kind, @Column("ROW_AMOUNT") BigDecimal amount) {
+			this.id = id;
+			this.name = name;
+			this.kind = kind;
+			this.amount = amount;
+		}
+	}
+
+	public static class DatedRow {
+		final Kind kind;
+		final LocalDate date;
+		final LocalDateTime time;
+
+		public DatedRow(@Column("ROW_KIND") Kind kind, @Column("ROW_DATE") LocalDate date, @Column("ROW_TIME") LocalDateTime time) {
+			this.kind = kind;
+			this.date = date;
+			this.time = time;
+		}
+	}
+
+	@QueryRepository
+	public interface SpillQueries {
+
+		@Query("CREATE TABLE IF NOT EXISTS LA_SPILL (ROW_ID INTEGER PRIMARY KEY NOT NULL, ROW_NAME VARCHAR(64) NOT NULL, ROW_KIND VARCHAR(8) NOT NULL, ROW_AMOUNT DECIMAL(10, 2))")
+		void createTable();
+
+		@Query("INSERT INTO LA_SPILL(ROW_ID, ROW_NAME, ROW_KIND, ROW_AMOUNT) VALUES(:id, :name, :kind, :amount)")
+		int insert(@Bind("id") int id, @Bind("name") String name, @Bind("kind") Kind kind, @Bind("amount") BigDecimal amount);
+
+		@SpillToDisk(maxRowsInMemory = 10)
+		@Query("SELECT * FROM LA_SPILL ORDER BY ROW_ID")
+		List<Row> findAll();
+
+		@SpillToDisk(maxRowsInMemory = 10, fetchSize = 20)
+		@Query("SELECT ROW_KIND, CAST('2020-01-15' AS DATE) ROW_DATE, CAST('2020-01-15 10:30:15.123' AS TIMESTAMP) ROW_TIME FROM LA_SPILL ORDER BY ROW_ID")
+		List<DatedRow> findAllDated();
+
+		@SpillToDisk(maxRowsInMemory = 10)
+		@Query("SELECT ROW_NAME FROM LA_SPILL ORDER BY ROW_ID")
+		List<String> findAllNames();
+
+		@SpillToDisk(maxRowsInMemory = 10)
+		@Query("SELECT ROW_NAME FROM LA_SPILL WHERE ROW_ID < :max ORDER BY ROW_ID")
+		List<String> findNamesLowerThan(@Bind("max") int max);
+	}
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.query;
+
+import ch.digitalfondue.npjt.*;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+public class TransactionCachedQueriesTest {
+
+	private static DataSource dataSource;
+	private static TransactionTemplate tx;
+
+	@BeforeClass
+	public static void prepare() throws Exception {
+		dataSource = TestJdbcConfiguration.dataSource("transactioncached");
+		tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		CachedQueries cq = QueryFactory.from(CachedQueries.class, "HSQLDB", dataSource);
+		cq.createTable();
+		cq.insert("A", "VALUE_A");
+		cq.insert("B", "VALUE_B");
+	}
+
+	@Test
+	public void cachedInTransaction() {
+		CachedQueries cq = QueryFactory.from(CachedQueries.class, "HSQLDB", dataSource);
+		CachedQueries other = QueryFactory.from(CachedQueries.class, "HSQLDB", dataSource);
+
+		tx.execute(status -> {
+			Conf a = cq.findByKey("A");
+			Assert.assertSame(a, cq.findByKey("A"));
+			Assert.assertNotSame(a, cq.findByKey("B"));
+			Assert.assertFalse(cq.findOptionalByKey("C").isPresent());
+
+			// not detected: modified by another repository
+			other.update("A", "VALUE_A2");
+			Assert.assertEquals("VALUE_A", cq.findByKey("A").value);
+
+			// a modification in the same repository discards the cached results
+			cq.update("B", "VALUE_B2");
+			Assert.assertEquals("VALUE_A2", cq.findByKey("A").value);
+			Assert.assertNotSame(a, cq.findByKey("A"));
+			status.setRollbackOnly();
+			return null;
+		});
+
+		// cleared at the end of the transaction
+		Conf a = tx.execute(status -> cq.findByKey("A"));
+		Assert.assertEquals("VALUE_A", a.value);
+		Assert.assertNotSame(a, tx.execute(status -> cq.findByKey("A")));
+	}
+
+	@Test
+	public void cachedKeysetPages() {
+		CachedQueries cq = QueryFactory.from(CachedQueries.class, "HSQLDB", dataSource);
+		tx.execute(status -> {
+			Page<Conf> first = cq.findPage(PageRequest.first(1));
+			Assert.assertEquals("A", first.getContent().get(0).key);
+			Assert.assertSame(first, cq.findPage(PageRequest.first(1)));
+			Page<Conf> second = cq.findPage(PageRequest.after("A", 1));
+			Assert.assertEquals("B", second.getContent().get(0).key);
+			Assert.assertNotSame(first, cq.findPage(PageRequest.first(2)));
+			return null;
+		});
+	}
+
+	@Test
+	public void cachedReferenceTable() {
+		CachedQueries cq = QueryFactory.from(CachedQueries.class, "HSQLDB", dataSource);
+		tx.execute(status -> {
+			Conf a = cq.findInSnapshot("A");
+			Assert.assertEquals("A", a.key);
+			Assert.assertSame(a, cq.findInSnapshot("A"));
+			Assert.assertEquals("B", cq.findInSnapshot("B").key);
+			return null;
+		});
+	}
+
+	@Test
+	public void cachedCollectionsAreUnmodifiable() {
+		CachedQueries cq = QueryFactory.from(CachedQueries.class, "HSQLDB", dataSource);
+		tx.execute(status -> {
+			List<Conf> all = cq.findAll();
+			Assert.assertEquals(2, all.size());
+			try {
+				all.clear();
+				Assert.fail("the cached list must not be modifiable");
+			} catch (UnsupportedOperationException e) {
+				// expected
+			}
+			Assert.assertSame(all, cq.findAll());
+			Assert.assertEquals(2, cq.findAll().size());
+			return null;
+		});
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void resultConsumerIsRejected() {
+		QueryFactory.from(InvalidCachedQueries.class, "HSQLDB", dataSource);
+	}
+
+	@Test
+	public void noTransaction() {
+		CachedQueries cq = QueryFactory.from(CachedQueries.class, "HSQLDB", dataSource);
+		Assert.assertNotSame(cq.findByKey("A"), cq.findByKey("A"));
+	}
+
+	public static class Conf {
+		final String key;
+		final String value;
+
+		public Conf(@ConstructorAnnotationRowMapper.Column("CONF_KEY") String key,
+					@ConstructorAnnotationRowMapper.Column("CONF_VALUE") String value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+
+	public interface CachedQueries {
+
+		@Query("CREATE TABLE LA_CACHED (CONF_KEY VARCHAR(64) PRIMARY KEY NOT NULL, CONF_VALUE VARCHAR(64) NOT NULL)")
+		void createTable();
+
+		@Query("INSERT INTO LA_CACHED(CONF_KEY, CONF_VALUE) VALUES(:key, :value)")
+		int insert(@Bind("key") String key, @Bind("value") String value);
+
+		@Query("UPDATE LA_CACHED SET CONF_VALUE = :value WHERE CONF_KEY = :key")
+		int update(@Bind("key") String key, @Bind("value") String value);
+
+		@TransactionCached
+		@Query("SELECT * FROM LA_CACHED WHERE CONF_KEY = :key")
+		Conf findByKey(@Bind("key") String key);
+
+		@TransactionCached
+		@Query("SELECT * FROM LA_CACHED ORDER BY CONF_KEY")
+		List<Conf> findAll();
+
+		@TransactionCached
+		@Query("SELECT * FROM LA_CACHED WHERE CONF_KEY = :key")
+		Optional<Conf> findOptionalByKey(@Bind("key") String key);
+
+		@TransactionCached
+		@Keyset(column = "CONF_KEY", property = "key")
+		@Query("SELECT * FROM LA_CACHED")
+		Page<Conf> findPage(PageRequest page);
+
+		@TransactionCached
+		@ReferenceTable(key = "CONF_KEY", refreshSeconds = 0)
+		@Query("SELECT * FROM LA_CACHED")
+		Conf findInSnapshot(String key);
+	}
+
+	public interface InvalidCachedQueries {
+
+		@TransactionCached
+		@Query("SELECT * FROM LA_CACHED")
+		void consumeAll(@ResultConsumer Consumer<Conf> consumer);
+	}
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright © 2015 digitalfondue (info@digitalfondue.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.digitalfondue.npjt.query;
+
+import ch.digitalfondue.npjt.*;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+public class WriteBehindQueriesTest {
+
+	private static DataSource dataSource;
+	private static TransactionTemplate tx;
+
+	@BeforeClass
+	public static void prepare() throws Exception {
+		dataSource = TestJdbcConfiguration.dataSource("writebehind");
+		tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		QueryFactory.from(WriteBehindQueries.class, "HSQLDB", dataSource).createTable();
+	}
+
+	@Test
+	public void callsAreBufferedUntilCommitOrSelect() {
+		WriteBehindQueries wq = QueryFactory.from(WriteBehindQueries.class, "HSQLDB", dataSource);
+		WriteBehindQueries other = QueryFactory.from(WriteBehindQueries.class, "HSQLDB", dataSource);
+
+		tx.execute(status -> {
+			for (int i = 0; i < 5; i++) {
+				wq.insertAudit("COMMIT", "EVENT_" + i);
+			}
+			// a select on another repository does not flush the buffer
+			Assert.assertEquals(0, other.countByCategory("COMMIT"));
+			// a select on the same repository flush the buffer
+			Assert.assertEquals(5, wq.countByCategory("COMMIT"));
+
+			wq.insertAudit("COMMIT", "EVENT_5");
+			return null;
+		});
+		Assert.assertEquals(6, wq.countByCategory("COMMIT"));
+
+		tx.execute(status -> {
+			wq.insertAudit("ROLLBACK", "EVENT");
+			status.setRollbackOnly();
+			return null;
+		});
+		Assert.assertEquals(0, wq.countByCategory("ROLLBACK"));
+	}
+
+	@Test
+	public void batchSizeAndNoTransaction() {
+		WriteBehindQueries wq = QueryFactory.from(WriteBehindQueries.class, "HSQLDB", dataSource);
+		WriteBehindQueries other = QueryFactory.from(WriteBehindQueries.class, "HSQLDB", dataSource);
+
+		tx.execute(status -> {
+			for (int i = 0; i < 3; i++) {
+				wq.insertAuditSmallBatch("BATCH", "EVENT_" + i);
+			}
+			Assert.assertEquals(2, other.countByCategory("BATCH"));
+			return null;
+		});
+		Assert.assertEquals(3, wq.countByCategory("BATCH"));
+
+		wq.insertAudit("NO_TX", "EVENT");
+		Assert.assertEquals(1, other.countByCategory("NO_TX"));
+	}
+
+	@Test
+	public void callsAreExecutedInOrder() {
+		WriteBehindQueries wq = QueryFactory.from(WriteBehindQueries.class, "HSQLDB", dataSource);
+		tx.execute(status -> {
+			wq.insertAudit("ORDER", "EVENT_1");
+			wq.updateEvents("ORDER", "UPDATED");
+			wq.insertAudit("ORDER", "EVENT_2");
+			return null;
+		});
+		Assert.assertEquals(2, wq.countByCategory("ORDER"));
+		Assert.assertEquals(1, wq.countByEvent("UPDATED"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void nonVoidMethodIsRejectedAtCreation() {
+		QueryFactory.from(InvalidWriteBehindQueries.class, "HSQLDB", dataSource);
+	}
+
+	public interface InvalidWriteBehindQueries {
+		@WriteBehind
+		@Query("INSERT INTO LA_WRITE_BEHIND(AUDIT_CATEGORY, AUDIT_EVENT) VALUES(:category, :event)")
+		int insertAudit(@Bind("category") String category, @Bind("event") String event);
+	}
+
+	public interface WriteBehindQueries {
+
+		@Query("CREATE TABLE LA_WRITE_BEHIND (AUDIT_CATEGORY VARCHAR(64) NOT NULL, AUDIT_EVENT VARCHAR(255) NOT NULL)")
+		void createTable();
+
+		@WriteBehind
+		@Query("INSERT INTO LA_WRITE_BEHIND(AUDIT_CATEGORY, AUDIT_EVENT) VALUES(:category, :event)")
+		void insertAudit(@Bind("category") String category, @Bind("event") String event);
+
+		@WriteBehind(batchSize = 2)
+		@Query("INSERT INTO LA_WRITE_BEHIND(AUDIT_CATEGORY, AUDIT_EVENT) VALUES(:category, :event)")
+		void insertAuditSmallBatch(@Bind("category") String category, @Bind("event") String event);
+
+		@WriteBehind
+		@Query("UPDATE LA_WRITE_BEHIND SET AUDIT_EVENT = :event WHERE AUDIT_CATEGORY = :category")
+		void updateEvents(@Bind("category") String category, @Bind("event") String event);
+
+		@Query("SELECT COUNT(*) FROM LA_WRITE_BEHIND WHERE AUDIT_CATEGORY = :category")
+		int countByCategory(@Bind("category") String category);
+
+		@Query("SELECT COUNT(*) FROM LA_WRITE_BEHIND WHERE AUDIT_EVENT = :event")
+		int countByEvent(@Bind("event") String event);
+	}
+}